@@ -0,0 +1,409 @@
+package mintec;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.io.RandomAccessSourceFactory;
+import com.itextpdf.text.pdf.PRIndirectReference;
+import com.itextpdf.text.pdf.PRStream;
+import com.itextpdf.text.pdf.PdfArray;
+import com.itextpdf.text.pdf.PdfCopy;
+import com.itextpdf.text.pdf.PdfDictionary;
+import com.itextpdf.text.pdf.PdfIndirectReference;
+import com.itextpdf.text.pdf.PdfName;
+import com.itextpdf.text.pdf.PdfNull;
+import com.itextpdf.text.pdf.PdfNumber;
+import com.itextpdf.text.pdf.PdfObject;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.PdfStamper;
+import com.itextpdf.text.pdf.PdfStream;
+import com.itextpdf.text.pdf.PdfWriter;
+import com.itextpdf.text.pdf.RandomAccessFileOrArray;
+
+import mintec.PipelineEvents.Span;
+import mintec.PipelineEvents.Stage;
+
+/**
+ * Das Gesamtdokument, welches alle erzeugten Zertifikate enthält, zusammen mit seinem Seitenindex.
+ *
+ * Der Seitenindex gibt für jedes Zertifikat (bezeichnet durch den Namen der Ausgabedatei) die Seiten im
+ * Gesamtdokument an. Er wird im Katalog des Gesamtdokuments selbst gespeichert ({@link #INDEX_KEY}), sodass
+ * Dokument und Index immer zusammen geschrieben werden und nicht auseinanderlaufen können. Mit dem Index können
+ * später einzelne Zertifikate ersetzt, angehängt oder entfernt werden ({@link #update}), ohne dass dafür alle
+ * Anträge erneut bearbeitet werden müssen.
+ *
+ * Die Aktualisierung wird als inkrementelle Änderung an das bisherige Gesamtdokument angehängt: es werden nur
+ * die neuen Seiten, die geänderten Knoten des Seitenbaums und der neue Index geschrieben, die unveränderten
+ * Seiten werden weder gelesen noch neu geschrieben. Die Seiten ersetzter oder entfernter Zertifikate bleiben
+ * dabei unbenutzt in der Datei; erst das vollständige Neuerstellen entfernt sie.
+ *
+ * Das Dokument wird zunächst in eine temporäre Datei geschrieben und erst von {@link #finish} in das
+ * Ausgabeziel kopiert. Diese Klasse ist nicht threadsicher.
+ */
+class Aggregate implements Closeable {
+	/** Dateiname des Gesamtdokuments. */
+	static final String NAME = "all.pdf";
+
+	/**
+	 * Schlüssel des Seitenindex im Katalog des Gesamtdokuments. Der Index ist ein Stream, dessen Zeilen jeweils
+	 * Ausgabedatei, erste Seite und Seitenanzahl enthalten, getrennt durch Tabulatoren.
+	 */
+	static final PdfName INDEX_KEY = new PdfName("MintecIndex");
+
+	/** Ein Zertifikat im Gesamtdokument. */
+	private static class Segment {
+		final String name;
+		final int firstPage;
+		final int pages;
+
+		Segment(String name, int firstPage, int pages) {
+			this.name = name;
+			this.firstPage = firstPage;
+			this.pages = pages;
+		}
+	}
+
+	/**
+	 * Übernimmt die Objekte eines Zertifikats in die inkrementelle Änderung des Gesamtdokuments.
+	 *
+	 * Verweise auf die Seite selbst (z.B. von Formularfeldern) zeigen danach auf die neue Seite im
+	 * Gesamtdokument, den Seitenbaum des Zertifikats übernimmt die Kopie nicht.
+	 */
+	private static class Import {
+		private final PdfWriter writer;
+		private final Map<Integer, PdfIndirectReference> references = new HashMap<>();
+
+		Import(PdfWriter writer) {
+			this.writer = writer;
+		}
+
+		void copyPage(PdfReader certificate, int page, PdfDictionary target, PdfIndirectReference targetReference) throws IOException {
+			references.put(certificate.getPageOrigRef(page).getNumber(), targetReference);
+			PdfDictionary source = certificate.getPageN(page);
+			for(PdfName key : source.getKeys()) {
+				if(!PdfName.PARENT.equals(key)) target.put(key, copy(source.get(key)));
+			}
+		}
+
+		private PdfObject copy(PdfObject object) throws IOException {
+			switch(object.type()) {
+			case PdfObject.INDIRECT:
+				PRIndirectReference reference = (PRIndirectReference) object;
+				PdfIndirectReference copied = references.get(reference.getNumber());
+				if(copied == null) {
+					// Die Nummer wird vor dem Kopieren vergeben, damit Zyklen (z.B. Feld und Widget) enden
+					copied = writer.getPdfIndirectReference();
+					references.put(reference.getNumber(), copied);
+					PdfObject target = PdfReader.getPdfObjectRelease(reference);
+					writer.addToBody(target == null ? PdfNull.PDFNULL : copy(target), copied);
+				}
+				return copied;
+			case PdfObject.STREAM:
+				PdfStream stream = new PdfStream(PdfReader.getStreamBytesRaw((PRStream) object));
+				copyEntries((PdfDictionary) object, stream);
+				return stream;
+			case PdfObject.DICTIONARY:
+				return copyEntries((PdfDictionary) object, new PdfDictionary());
+			case PdfObject.ARRAY:
+				PdfArray array = new PdfArray();
+				for(PdfObject element : (PdfArray) object) array.add(copy(element));
+				return array;
+			default:
+				return object;
+			}
+		}
+
+		private PdfDictionary copyEntries(PdfDictionary source, PdfDictionary target) throws IOException {
+			for(PdfName key : source.getKeys()) {
+				// Die Länge eines Streams ergibt sich aus den kopierten Daten
+				if(!(source.isStream() && PdfName.LENGTH.equals(key))) target.put(key, copy(source.get(key)));
+			}
+			return target;
+		}
+	}
+
+	private final File temporary;
+	private final Document document;
+	private final OutputStream out;
+	private final PdfCopy copy;
+	private final List<Segment> index = new ArrayList<>();
+	private int pages = 0;
+
+	/** Das bisherige Gesamtdokument und sein Index, oder null wenn ein neues Gesamtdokument erstellt wird. */
+	private PdfReader base;
+	private final List<Segment> baseIndex;
+
+	/** Bei einer Aktualisierung: die neuen Zertifikate (null zum Entfernen), in der Reihenfolge der Tabelle. */
+	private final Map<String, byte[]> changes = new LinkedHashMap<>();
+
+	private Aggregate(PdfReader base, List<Segment> baseIndex) throws IOException, DocumentException {
+		this.base = base;
+		this.baseIndex = baseIndex;
+		this.temporary = File.createTempFile("mintec", ".pdf");
+		this.out = new BufferedOutputStream(new FileOutputStream(temporary), AtomicFileOutputStream.BUFFER_SIZE);
+		if(base == null) {
+			this.document = new Document();
+			this.copy = new PdfCopy(document, out);
+			document.open();
+			copy.open();
+		} else {
+			// Die Änderungen werden erst in finish an das bisherige Gesamtdokument angehängt
+			this.document = null;
+			this.copy = null;
+		}
+	}
+
+	/**
+	 * Beginnt ein neues Gesamtdokument. Die Zertifikate werden in der Reihenfolge der Aufrufe von {@link #put}
+	 * angefügt.
+	 *
+	 * @throws IOException Wenn die temporäre Datei nicht angelegt werden kann.
+	 * @throws DocumentException Wenn das Dokument nicht angelegt werden kann.
+	 */
+	Aggregate() throws IOException, DocumentException {
+		this(null, null);
+	}
+
+	/**
+	 * Beginnt die Aktualisierung eines bestehenden Gesamtdokuments.
+	 *
+	 * Zertifikate, die mit {@link #put} übergeben werden, ersetzen die bisherigen Seiten des gleichnamigen
+	 * Zertifikats, oder werden am Ende angehängt, wenn das Zertifikat bisher nicht enthalten war. Alle anderen
+	 * Zertifikate bleiben unverändert.
+	 *
+	 * @param directory Das Verzeichnis, welches das Gesamtdokument enthält.
+	 * @return Das zu aktualisierende Gesamtdokument.
+	 * @throws IOException Wenn das Gesamtdokument fehlt oder keinen passenden Seitenindex enthält.
+	 * @throws DocumentException Wenn die temporäre Datei nicht angelegt werden kann.
+	 */
+	static Aggregate update(File directory) throws IOException, DocumentException {
+		File documentFile = new File(directory, NAME);
+		if(!documentFile.isFile()) {
+			throw new IOException("Kein Gesamtdokument vorhanden, bitte zuerst alle Zertifikate erstellen");
+		}
+		// Das Gesamtdokument wird nicht vollständig in den Arbeitsspeicher gelesen, sondern bei Bedarf aus der Datei
+		PdfReader base = new PdfReader(new RandomAccessFileOrArray(new RandomAccessSourceFactory().setForceRead(false).createBestSource(documentFile.getPath())), null);
+		try {
+			List<Segment> baseIndex = readIndex(base);
+			int indexed = baseIndex.isEmpty() ? 0 : baseIndex.get(baseIndex.size() - 1).firstPage + baseIndex.get(baseIndex.size() - 1).pages - 1;
+			if(indexed != base.getNumberOfPages()) {
+				throw new IOException("Seitenindex passt nicht zu " + NAME + " (" + indexed + " statt " + base.getNumberOfPages() + " Seiten)");
+			}
+			return new Aggregate(base, baseIndex);
+		} catch(IOException | DocumentException | RuntimeException e) {
+			base.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Übergibt das Zertifikat eines Antrags.
+	 *
+	 * @param name Der Name der Ausgabedatei des Zertifikats, unter dem es im Seitenindex geführt wird.
+	 * @param certificate Das Zertifikat, oder null wenn für den Antrag kein Zertifikat erzeugt wurde. Bei einer
+	 *                    Aktualisierung wird das bisherige Zertifikat dann entfernt.
+	 * @throws IOException Wenn das Zertifikat nicht gelesen werden kann.
+	 * @throws DocumentException Wenn das Zertifikat nicht angefügt werden kann.
+	 */
+	void put(String name, byte[] certificate) throws IOException, DocumentException {
+		if(baseIndex != null) changes.put(name, certificate);
+		else if(certificate != null) append(name, certificate);
+	}
+
+	private void append(String name, byte[] certificate) throws IOException, DocumentException {
+		PdfReader reader = new PdfReader(certificate);
+		copy.addDocument(reader);
+		index.add(new Segment(name, pages + 1, reader.getNumberOfPages()));
+		pages += reader.getNumberOfPages();
+	}
+
+	/**
+	 * Schließt das Gesamtdokument ab und schreibt es zusammen mit dem Seitenindex in das Ausgabeziel.
+	 *
+	 * Enthält das Gesamtdokument keine Seiten, wird ein bisheriges Gesamtdokument im Ausgabeziel gelöscht, da ein
+	 * PDF-Dokument ohne Seiten nicht geschrieben werden kann.
+	 *
+	 * @param sink Das Ausgabeziel.
+	 * @return Anzahl der Seiten des Gesamtdokuments.
+	 * @throws IOException Wenn das Schreiben fehlschlägt.
+	 * @throws DocumentException Wenn das Dokument nicht abgeschlossen werden kann.
+	 */
+	int finish(OutputSink sink) throws IOException, DocumentException {
+		if(baseIndex != null) {
+			pages = updatedPages();
+		}
+		if(pages == 0) {
+			out.close();
+			closeBase();
+			sink.delete(NAME);
+			return 0;
+		}
+
+		Span span = PipelineEvents.begin(Stage.AGGREGATE, NAME);
+		if(baseIndex == null) {
+			copy.getExtraCatalog().put(INDEX_KEY, copy.addToBody(indexStream(index)).getIndirectReference());
+			copy.close();
+			document.close();
+		} else {
+			PdfStamper stamper = new PdfStamper(base, out, '\0', true);
+			applyChanges(stamper);
+			base.getCatalog().put(INDEX_KEY, stamper.getWriter().addToBody(indexStream(index)).getIndirectReference());
+			stamper.markUsed(base.getTrailer().get(PdfName.ROOT));
+			stamper.close();
+		}
+		span.end(temporary.length(), null);
+		// Das bisherige Gesamtdokument muss geschlossen sein, bevor es ersetzt wird
+		closeBase();
+		try(OutputStream target = sink.create(NAME)) {
+			Files.copy(temporary.toPath(), target);
+		}
+		return pages;
+	}
+
+	/** Berechnet bei einer Aktualisierung den neuen Seitenindex und gibt die neue Seitenanzahl zurück. */
+	private int updatedPages() throws IOException {
+		Map<String, Integer> counts = new HashMap<>();
+		for(Map.Entry<String, byte[]> change : changes.entrySet()) {
+			if(change.getValue() == null) continue;
+			PdfReader reader = new PdfReader(change.getValue());
+			counts.put(change.getKey(), reader.getNumberOfPages());
+			reader.close();
+		}
+		Set<String> names = new HashSet<>();
+		int next = 1;
+		for(Segment segment : baseIndex) {
+			names.add(segment.name);
+			Integer count = changes.containsKey(segment.name) ? counts.get(segment.name) : Integer.valueOf(segment.pages);
+			if(count == null) continue;
+			index.add(new Segment(segment.name, next, count));
+			next += count;
+		}
+		for(String name : changes.keySet()) {
+			if(names.contains(name) || !counts.containsKey(name)) continue;
+			index.add(new Segment(name, next, counts.get(name)));
+			next += counts.get(name);
+		}
+		return next - 1;
+	}
+
+	/**
+	 * Nimmt die Änderungen am Seitenbaum des bisherigen Gesamtdokuments vor.
+	 *
+	 * Zuerst werden die neuen Zertifikate angehängt, danach die geänderten Zertifikate von hinten nach vorne
+	 * ersetzt, sodass sich die Seitennummern der noch zu bearbeitenden Zertifikate nicht verschieben.
+	 */
+	private void applyChanges(PdfStamper stamper) throws IOException {
+		Set<String> names = new HashSet<>();
+		for(Segment segment : baseIndex) names.add(segment.name);
+		int last = base.getNumberOfPages();
+		for(Map.Entry<String, byte[]> change : changes.entrySet()) {
+			if(!names.contains(change.getKey()) && change.getValue() != null) last += insert(stamper, last + 1, change.getValue());
+		}
+		for(int i = baseIndex.size() - 1; i >= 0; i--) {
+			Segment segment = baseIndex.get(i);
+			if(!changes.containsKey(segment.name)) continue;
+			List<PRIndirectReference> replaced = new ArrayList<>();
+			for(int page = segment.firstPage; page < segment.firstPage + segment.pages; page++) replaced.add(base.getPageOrigRef(page));
+			byte[] certificate = changes.get(segment.name);
+			if(certificate != null) insert(stamper, segment.firstPage, certificate);
+			for(PRIndirectReference page : replaced) removePage(stamper, page);
+		}
+	}
+
+	/** Fügt die Seiten eines Zertifikats vor der angegebenen Seite ein und gibt ihre Anzahl zurück. */
+	private int insert(PdfStamper stamper, int position, byte[] certificate) throws IOException {
+		PdfReader reader = new PdfReader(certificate);
+		Import imported = new Import(stamper.getWriter());
+		for(int page = 1; page <= reader.getNumberOfPages(); page++) {
+			int target = position + page - 1;
+			stamper.insertPage(target, reader.getPageSizeWithRotation(page));
+			imported.copyPage(reader, page, base.getPageN(target), base.getPageOrigRef(target));
+		}
+		reader.close();
+		return reader.getNumberOfPages();
+	}
+
+	/**
+	 * Entfernt eine Seite aus dem Seitenbaum des bisherigen Gesamtdokuments. Die Seite selbst bleibt als
+	 * unbenutztes Objekt in der Datei.
+	 */
+	private static void removePage(PdfStamper stamper, PRIndirectReference page) {
+		PdfDictionary node = (PdfDictionary) PdfReader.getPdfObject(((PdfDictionary) PdfReader.getPdfObject(page)).get(PdfName.PARENT));
+		PdfArray kids = (PdfArray) PdfReader.getPdfObject(node.get(PdfName.KIDS));
+		for(int k = 0; k < kids.size(); k++) {
+			if(((PRIndirectReference) kids.getPdfObject(k)).getNumber() == page.getNumber()) {
+				kids.remove(k);
+				break;
+			}
+		}
+		stamper.markUsed(kids);
+		for(; node != null; node = node.getAsDict(PdfName.PARENT)) {
+			node.put(PdfName.COUNT, new PdfNumber(node.getAsNumber(PdfName.COUNT).intValue() - 1));
+			stamper.markUsed(node);
+		}
+	}
+
+	private static PdfStream indexStream(List<Segment> index) {
+		StringBuilder lines = new StringBuilder();
+		for(Segment segment : index) {
+			lines.append(segment.name).append('\t').append(segment.firstPage).append('\t').append(segment.pages).append('\n');
+		}
+		PdfStream stream = new PdfStream(lines.toString().getBytes(StandardCharsets.UTF_8));
+		stream.flateCompress();
+		return stream;
+	}
+
+	private static List<Segment> readIndex(PdfReader document) throws IOException {
+		PdfObject stream = PdfReader.getPdfObject(document.getCatalog().get(INDEX_KEY));
+		if(!(stream instanceof PRStream)) {
+			throw new IOException(NAME + " enthält keinen Seitenindex, bitte zuerst alle Zertifikate neu erstellen");
+		}
+		List<Segment> segments = new ArrayList<>();
+		int nextPage = 1;
+		for(String line : new String(PdfReader.getStreamBytes((PRStream) stream), StandardCharsets.UTF_8).split("\n")) {
+			if(line.isEmpty()) continue;
+			String[] fields = line.split("\t");
+			try {
+				Segment segment = new Segment(fields[0], Integer.parseInt(fields[1]), Integer.parseInt(fields[2]));
+				if(segment.firstPage != nextPage || segment.pages < 1) throw new NumberFormatException();
+				segments.add(segment);
+				nextPage += segment.pages;
+			} catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				throw new IOException("Fehlerhafte Zeile im Seitenindex von " + NAME + ": " + line);
+			}
+		}
+		return segments;
+	}
+
+	private void closeBase() {
+		if(base != null) base.close();
+		base = null;
+	}
+
+	/** Löscht die temporäre Datei. */
+	@Override
+	public void close() {
+		closeBase();
+		try {
+			out.close();
+		} catch(IOException e) {
+			// Die temporäre Datei wird ohnehin gelöscht
+		}
+		temporary.delete();
+	}
+}
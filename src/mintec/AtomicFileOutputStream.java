@@ -0,0 +1,98 @@
+package mintec;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Schreibt eine Datei zunächst unter einem temporären Namen und benennt sie erst beim Schließen um.
+ *
+ * Bricht das Programm während des Schreibens ab, bleibt höchstens die versteckte temporäre Datei zurück,
+ * aber nie eine unvollständige Datei unter dem endgültigen Namen. Ist beim Schreiben ein Fehler aufgetreten,
+ * wird die temporäre Datei beim Schließen gelöscht statt umbenannt.
+ */
+class AtomicFileOutputStream extends OutputStream {
+	/** Größe des Schreibpuffers, sodass auch größere Dateien mit wenigen Schreibvorgängen geschrieben werden. */
+	static final int BUFFER_SIZE = 256 << 10;
+
+	private final File target;
+	private final File temporary;
+	private final OutputStream out;
+	private boolean failed = false;
+	private boolean closed = false;
+
+	/**
+	 * @param target Die Datei, die beim Schließen angelegt oder ersetzt wird.
+	 * @throws IOException Wenn die temporäre Datei nicht angelegt werden kann.
+	 */
+	AtomicFileOutputStream(File target) throws IOException {
+		this.target = target.getAbsoluteFile();
+		this.temporary = File.createTempFile("." + target.getName() + "-", ".tmp", this.target.getParentFile());
+		this.out = new BufferedOutputStream(new FileOutputStream(temporary), BUFFER_SIZE);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		try {
+			out.write(b);
+		} catch(IOException e) {
+			failed = true;
+			throw e;
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		try {
+			out.write(b, off, len);
+		} catch(IOException e) {
+			failed = true;
+			throw e;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/** Verwirft die Datei: die temporäre Datei wird gelöscht und die Zieldatei bleibt unverändert. */
+	void abort() {
+		failed = true;
+		try {
+			close();
+		} catch(IOException e) {
+			// Die temporäre Datei wird trotzdem gelöscht
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(closed) return;
+		closed = true;
+		try {
+			out.close();
+		} catch(IOException e) {
+			failed = true;
+			throw e;
+		} finally {
+			if(failed) temporary.delete();
+		}
+		if(failed) return;
+		try {
+			try {
+				Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch(AtomicMoveNotSupportedException e) {
+				Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch(IOException e) {
+			temporary.delete();
+			throw e;
+		}
+	}
+}
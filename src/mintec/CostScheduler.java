@@ -0,0 +1,80 @@
+package mintec;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Legt fest, in welcher Reihenfolge die Anträge eines Durchlaufs gestartet werden.
+ *
+ * Die meisten Anträge sind nur wenige KB groß, einzelne enthalten aber eingebettete Bilder und sind
+ * mehrere MB groß. Werden die Anträge in der Reihenfolge der Tabelle gestartet, kann ein solcher Antrag
+ * am Ende allein bearbeitet werden, während alle anderen Threads bereits fertig sind. Deshalb werden die
+ * Anträge nach ihrem geschätzten Aufwand (siehe {@link #cost}) sortiert, und die aufwändigsten zuerst
+ * gestartet.
+ *
+ * Da die Ergebnisse weiterhin in der Reihenfolge der Tabelle ausgegeben werden, müssen vorzeitig fertige
+ * Ergebnisse zwischengespeichert werden. Damit dafür nicht beliebig viel Speicher benötigt wird, wählt der
+ * Scheduler nur unter den nächsten {@code window} Anträgen ab dem ersten noch nicht ausgegebenen Antrag aus.
+ * Diese Klasse ist nicht threadsicher.
+ */
+class CostScheduler {
+	/** Geschätzter fester Aufwand eines Antrags (Vorlage kopieren, Felder füllen), umgerechnet in Bytes. */
+	static final long FIXED_COST = 256 << 10;
+
+	/** Faktor für den Aufwand pro Byte von .xlsx-Dateien, die als komprimiertes XML vorliegen. */
+	static final int XLSX_WEIGHT = 8;
+
+	private final List<FileEntry> entries;
+	private final int window;
+	private final long[] costs;
+	private final PriorityQueue<Integer> ready;
+
+	/** Die Anträge vor diesem Index wurden bereits in {@link #ready} aufgenommen. */
+	private int admitted = 0;
+
+	/**
+	 * @param entries Die Anträge in der Reihenfolge der Tabelle.
+	 * @param window Anzahl der Anträge ab dem ersten nicht ausgegebenen Antrag, unter denen ausgewählt wird.
+	 */
+	CostScheduler(List<FileEntry> entries, int window) {
+		this.entries = entries;
+		this.window = window;
+		this.costs = new long[entries.size()];
+		this.ready = new PriorityQueue<>(Math.max(1, Math.min(window, entries.size())), new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				int byCost = Long.compare(costs[b], costs[a]);
+				return byCost != 0 ? byCost : Integer.compare(a, b);
+			}
+		});
+	}
+
+	/**
+	 * Wählt den nächsten zu startenden Antrag aus.
+	 *
+	 * @param frontier Index des ersten Antrags, dessen Ergebnis noch nicht ausgegeben wurde.
+	 * @return Index des aufwändigsten noch nicht gestarteten Antrags im Fenster ab {@code frontier},
+	 *         oder -1 wenn alle Anträge im Fenster bereits gestartet wurden.
+	 */
+	int next(int frontier) {
+		while(admitted < entries.size() && admitted < frontier + window) {
+			costs[admitted] = cost(entries.get(admitted).input);
+			ready.add(admitted++);
+		}
+		Integer next = ready.poll();
+		return next == null ? -1 : next;
+	}
+
+	/**
+	 * Schätzt den Aufwand für die Bearbeitung eines Antrags aus Größe und Format der Excel-Datei.
+	 *
+	 * @param input Der Antrag.
+	 * @return Der geschätzte Aufwand, in Bytes einer .xls-Datei.
+	 */
+	static long cost(InputSource input) {
+		long size = Math.max(0, input.size());
+		if(input.getName().endsWith(".xlsx")) size *= XLSX_WEIGHT;
+		return FIXED_COST + size;
+	}
+}
@@ -0,0 +1,50 @@
+package mintec;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Schreibt die Probleme als CSV-Datei, mit einer Zeile pro Problem.
+ *
+ * Als Trennzeichen wird ein Semikolon verwendet und die Datei beginnt mit einer UTF-8-BOM, damit sie von
+ * einer deutschen Excel-Installation direkt richtig geöffnet wird.
+ */
+class CsvProblemReport implements ProblemReport {
+	private final Writer out;
+
+	CsvProblemReport(File file) throws IOException {
+		this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+		out.write('\uFEFF');
+		line("Datei", "Status", "Zelle", "Fehler", "Meldung");
+	}
+
+	@Override
+	public void write(FileEntry entry, FileProcessorResult result) throws IOException {
+		String file = entry.input.getName();
+		String state = String.valueOf(result.state);
+		if(result.error != null) line(file, state, "", "ja", result.error);
+		for(MintReader.Problem problem : result.problems) {
+			line(file, state, problem.column + problem.row, problem.fatal ? "ja" : "nein", problem.text);
+		}
+	}
+
+	private void line(String... fields) throws IOException {
+		for(int i = 0; i < fields.length; i++) {
+			if(i > 0) out.write(';');
+			out.write('"');
+			out.write(fields[i].replace("\"", "\"\""));
+			out.write('"');
+		}
+		out.write("\r\n");
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,39 @@
+package mintec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * Schreibt jede Ausgabedatei als eigene Datei in ein Verzeichnis.
+ *
+ * Die Dateien erscheinen erst vollständig geschrieben unter ihrem Namen, siehe {@link AtomicFileOutputStream}.
+ */
+class DirectorySink implements OutputSink {
+	private final File directory;
+
+	DirectorySink(File directory) {
+		this.directory = directory;
+	}
+
+	@Override
+	public OutputStream create(String name) throws IOException {
+		File file = new File(directory, name);
+		file.getParentFile().mkdirs();
+		return new AtomicFileOutputStream(file);
+	}
+
+	@Override
+	public void delete(String name) throws IOException {
+		Files.deleteIfExists(new File(directory, name).toPath());
+	}
+
+	@Override
+	public void abort() {
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,43 @@
+package mintec;
+
+/**
+ * Grenzen für die Ressourcen, die die Bearbeitung eines einzelnen Antrags verbrauchen darf.
+ *
+ * Eine beschädigte oder absichtlich manipulierte Excel-Datei (z.B. eine "ZIP-Bombe" oder eine riesige
+ * Tabelle mit gemeinsamen Zeichenketten) soll nicht die gesamte Verarbeitung blockieren oder den
+ * Arbeitsspeicher aufbrauchen. Wird eine dieser Grenzen überschritten, wird die Bearbeitung des Antrags
+ * abgebrochen und der Antrag als fehlerhaft markiert.
+ */
+class EntryLimits {
+	/** Die Standardgrenzen, die für normale Anträge (auch mit eingebetteten Bildern) großzügig bemessen sind. */
+	static final EntryLimits DEFAULT = new EntryLimits(32L << 20, 128L << 20, 0.01, 200000, 60);
+
+	/** Maximale Größe der Excel-Datei in Bytes. */
+	final long maxInputBytes;
+
+	/** Maximale Größe aller entpackten Bestandteile einer .xlsx-Datei in Bytes. */
+	final long maxUnpackedBytes;
+
+	/**
+	 * Kleinstes zulässiges Verhältnis von gepackter zu entpackter Größe eines Bestandteils einer .xlsx-Datei
+	 * (wie {@code ZipSecureFile.setMinInflateRatio} in neueren POI-Versionen).
+	 */
+	final double minInflateRatio;
+
+	/**
+	 * Maximale Anzahl der Datensätze im Tabellen-Stream einer .xls-Datei. Jeder Datensatz wird von POI als
+	 * eigenes Objekt eingelesen, die Anzahl begrenzt also den Speicherbedarf über die Dateigröße hinaus.
+	 */
+	final int maxRecords;
+
+	/** Maximale Bearbeitungszeit für einen Antrag in Sekunden. */
+	final int timeoutSeconds;
+
+	EntryLimits(long maxInputBytes, long maxUnpackedBytes, double minInflateRatio, int maxRecords, int timeoutSeconds) {
+		this.maxInputBytes = maxInputBytes;
+		this.maxUnpackedBytes = maxUnpackedBytes;
+		this.minInflateRatio = minInflateRatio;
+		this.maxRecords = maxRecords;
+		this.timeoutSeconds = timeoutSeconds;
+	}
+}
@@ -0,0 +1,42 @@
+package mintec;
+
+import java.util.List;
+
+/**
+ * Erzeugt aus einem einzelnen Antrag das zugehörige Zertifikat.
+ *
+ * Die Anträge werden entweder im laufenden Prozess bearbeitet ({@link LocalProcessor}) oder auf mehrere
+ * eigenständige Java-Prozesse verteilt ({@link WorkerPool}). Implementierungen können von mehreren Threads
+ * gleichzeitig verwendet werden.
+ */
+interface EntryProcessor extends AutoCloseable {
+	/** Das Ergebnis der Bearbeitung eines Antrags. */
+	class Result {
+		/** Die beim Einlesen festgestellten Probleme. */
+		final List<MintReader.Problem> problems;
+
+		/** Ein Fehler, der die Bearbeitung abgebrochen hat, oder null. */
+		final Exception exception;
+
+		/** Das erzeugte Zertifikat als PDF, oder null wenn kein Zertifikat erzeugt wurde. */
+		final byte[] certificate;
+
+		Result(List<MintReader.Problem> problems, Exception exception, byte[] certificate) {
+			this.problems = problems;
+			this.exception = exception;
+			this.certificate = certificate;
+		}
+	}
+
+	/**
+	 * Bearbeitet einen Antrag. Diese Methode wirft keine Exceptions, sondern liefert alle Fehler im Ergebnis.
+	 *
+	 * @param entry Der zu bearbeitende Antrag.
+	 * @return Das Ergebnis der Bearbeitung.
+	 */
+	Result process(FileEntry entry);
+
+	/** Gibt alle für die Bearbeitung verwendeten Ressourcen (Threads, Prozesse) wieder frei. */
+	@Override
+	void close();
+}
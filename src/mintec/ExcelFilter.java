@@ -6,11 +6,19 @@ import java.io.File;
 class ExcelFilter extends FileFilter implements java.io.FileFilter {
 	@Override
 	public boolean accept(File pathname) {
-		return pathname.isDirectory() || pathname.getAbsolutePath().endsWith(".xls") || pathname.getAbsolutePath().endsWith(".xlsx");
+		return pathname.isDirectory() || isExcelFile(pathname.getName()) || isZipFile(pathname.getName());
 	}
 
 	@Override
 	public String getDescription() {
-		return "MINT-EC Antrag oder Verzeichnis mit Anträgen";
+		return "MINT-EC Antrag, ZIP-Archiv oder Verzeichnis mit Anträgen";
+	}
+
+	static boolean isExcelFile(String name) {
+		return name.endsWith(".xls") || name.endsWith(".xlsx");
+	}
+
+	static boolean isZipFile(String name) {
+		return name.endsWith(".zip");
 	}
 }
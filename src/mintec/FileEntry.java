@@ -1,17 +1,17 @@
 package mintec;
 
-import java.io.File;
-
 class FileEntry {
-	final File inputFile;
-	final File outputFile;
+	final InputSource input;
+	final String outputName;
+	final School school;
 
 	private FileProcessorResult result;
 
-	FileEntry(File in, File out) {
+	FileEntry(InputSource in, String outputName, School school) {
 		super();
-		this.inputFile = in;
-		this.outputFile = out;
+		this.input = in;
+		this.outputName = outputName;
+		this.school = school;
 		this.result = new FileProcessorResult();
 	}
 
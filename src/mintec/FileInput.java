@@ -0,0 +1,34 @@
+package mintec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Ein Antrag, der als einzelne Datei vorliegt. */
+class FileInput implements InputSource {
+	private final File file;
+
+	FileInput(File file) {
+		this.file = file;
+	}
+
+	@Override
+	public String getName() {
+		return file.getName();
+	}
+
+	@Override
+	public InputStream open() throws IOException {
+		return new FileInputStream(file);
+	}
+
+	@Override
+	public long size() {
+		return file.isFile() ? file.length() : -1;
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -1,5 +1,6 @@
 package mintec;
 
+import java.util.Collections;
 import java.util.List;
 
 class FileProcessorResult {
@@ -10,35 +11,60 @@ class FileProcessorResult {
 		WARN
 	}
 
-	final String problemsMessage;
 	final State state;
 	final int fileId;
 
+	/** Eine Fehlermeldung, wenn die Bearbeitung abgebrochen wurde, sonst null. */
+	final String error;
+
+	/** Die beim Einlesen festgestellten Probleme. */
+	final List<MintReader.Problem> problems;
+
 	FileProcessorResult() {
 		this.state = null;
-		this.problemsMessage = "";
 		this.fileId = -1;
+		this.error = null;
+		this.problems = Collections.emptyList();
 	}
 
 	FileProcessorResult(Exception exception, List<MintReader.Problem> problems, int fileId) {
 		State state = State.OK;
+		String error = null;
+		if(exception instanceof LimitExceededException) {
+			state = State.FAIL;
+			error = "Abgebrochen: " + exception.getLocalizedMessage();
+		} else if(exception != null) {
+			state = State.FAIL;
+			error = "Ein-/Ausgabefehler: " + exception.getLocalizedMessage();
+		}
+		for(MintReader.Problem problem : problems) {
+			if(problem.fatal) state = State.FAIL;
+			else if(state != State.FAIL) state = State.WARN;
+		}
+
+		this.state = state;
+		this.fileId = fileId;
+		this.error = error;
+		this.problems = problems;
+	}
 
+	/**
+	 * Erstellt den Text für die Spalte "Probleme" der Tabelle: zuerst alle Fehler, dann alle Warnungen.
+	 *
+	 * Der Text wird erst erstellt, wenn er tatsächlich angezeigt wird, und nicht gespeichert.
+	 */
+	String getProblemsMessage() {
 		StringBuilder errors = new StringBuilder();
 		StringBuilder warnings = new StringBuilder();
-		if(exception != null) errors.append("Ein-/Ausgabefehler: ").append(exception.getLocalizedMessage()).append("\n");
+		if(error != null) errors.append(error).append("\n");
 		for(MintReader.Problem problem : problems) {
-			String msg = "Zelle " + problem.column + problem.row + ": " + problem.text + "\n";
-			if(problem.fatal) {
-				state = State.FAIL;
-				errors.append(msg);
-			} else {
-				state = State.WARN;
-				warnings.append(msg);
-			}
+			(problem.fatal ? errors : warnings).append(cellName(problem)).append(": ").append(problem.text).append("\n");
 		}
+		if(errors.length() == 0 && warnings.length() == 0) return "";
+		return errors.append("\n").append(warnings).toString();
+	}
 
-		this.state = state;
-		this.problemsMessage = errors.append("\n").append(warnings).toString();
-		this.fileId = fileId;
+	static String cellName(MintReader.Problem problem) {
+		return "Zelle " + problem.column + problem.row;
 	}
-}
\ No newline at end of file
+}
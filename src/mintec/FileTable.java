@@ -1,38 +1,66 @@
 package mintec;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.SwingWorker;
 import javax.swing.table.AbstractTableModel;
 
 import mintec.FileProcessorResult.State;
+import mintec.PipelineEvents.Span;
+import mintec.PipelineEvents.Stage;
 
-import com.itextpdf.text.Document;
 import com.itextpdf.text.DocumentException;
-import com.itextpdf.text.pdf.PdfCopy;
-import com.itextpdf.text.pdf.PdfReader;
 
 class FileTable extends AbstractTableModel {
 	private static final long serialVersionUID = -2985648423163667274L;
 
-	private enum Column { STATE, FILE, PROBLEMS }
+	private enum Column { STATE, FILE, SCHOOL, PROBLEMS }
 
-	private final static String[] columnNames = { "Status", "Datei", "Probleme" };
+	private final static String[] columnNames = { "Status", "Datei", "Schule", "Probleme" };
 	private final static Column[] columns = Column.values();
 	private final List<FileEntry> files;
-	private SwingWorker<Void, FileProcessorResult> worker = null;
-	private final byte[] template;
-	private final File aggregateDocument;
+	private ProcessEntries worker = null;
+	private final TemplateCache templates;
+	private final StateIndex index = new StateIndex();
 
-	FileTable(byte[] template, File aggregateDocument) {
-		this.template = template;
-		this.aggregateDocument = aggregateDocument;
+	/** Der Status, nach dem die Tabelle gefiltert wird, oder null wenn alle Anträge angezeigt werden. */
+	private State filter = null;
+
+	/** Anzahl der Anträge, die gleichzeitig bearbeitet werden. */
+	private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Anzahl der Anträge ab dem ersten noch nicht ausgegebenen Antrag, unter denen der aufwändigste zuerst
+	 * gestartet wird (siehe {@link CostScheduler}). Begrenzt die Anzahl der zwischengespeicherten Ergebnisse.
+	 */
+	private static final int SCHEDULE_WINDOW = 16 * PARALLELISM;
+
+	/** Anzahl der Anträge, die im Voraus gelesen werden (siehe {@link Prefetcher}). */
+	private static final int READ_AHEAD = 2 * PARALLELISM;
+
+	/** Arbeitsspeicher in Bytes, den die im Voraus gelesenen Anträge höchstens belegen. */
+	private static final long READ_AHEAD_BYTES = 64L << 20;
+
+	/** Anzahl der fertigen Anträge, die höchstens auf das Schreiben warten (siehe {@link WriterStage}). */
+	private static final int WRITE_QUEUE = 2 * PARALLELISM;
+
+	FileTable() {
+		this.templates = new TemplateCache();
 		this.files = new ArrayList<>();
 	}
 
@@ -48,6 +76,7 @@ class FileTable extends AbstractTableModel {
 		switch(toColumn(column)) {
 			case FILE: return "Datei";
 			case STATE: return "Status";
+			case SCHOOL: return "Schule";
 			case PROBLEMS: return "Probleme";
 		}
 		throw new RuntimeException("Invalid column");
@@ -57,87 +86,361 @@ class FileTable extends AbstractTableModel {
 	public int getColumnCount() { return columnNames.length; }
 
 	@Override
-	public int getRowCount() { return files.size(); }
+	public int getRowCount() { return filter == null ? files.size() : index.count(filter); }
 
 	@Override
 	public Object getValueAt(int row, int column) {
-		FileEntry entry = files.get(row);
+		FileEntry entry = files.get(toEntryRow(row));
 		switch(toColumn(column)) {
-			case FILE: return entry.inputFile.getName();
+			case FILE: return entry.input.getName();
 			case STATE: return entry.getResult().state;
-			case PROBLEMS: return entry.getResult().problemsMessage;
+			case SCHOOL: return entry.school.name;
+			case PROBLEMS: return entry.getResult().getProblemsMessage();
 		}
 		throw new RuntimeException("Invalid column");
 	}
 
 	void addEntry(FileEntry entry) {
 		files.add(entry);
-		fireTableRowsInserted(files.size() - 1, files.size() - 1);
+		if(filter == null) fireTableRowsInserted(files.size() - 1, files.size() - 1);
+	}
+
+	/**
+	 * Zeigt nur noch die Anträge mit einem bestimmten Status an.
+	 *
+	 * @param filter Der Status der angezeigten Anträge, oder null um alle Anträge anzuzeigen.
+	 */
+	void setFilter(State filter) {
+		this.filter = filter;
+		fireTableDataChanged();
+	}
+
+	/**
+	 * @return Anzahl der Anträge mit dem gegebenen Status.
+	 */
+	int getCount(State state) {
+		return index.count(state);
+	}
+
+	/**
+	 * @return Anzahl der Anträge, die noch nicht bearbeitet wurden.
+	 */
+	int getPendingCount() {
+		int pending = files.size();
+		for(State state : State.values()) pending -= index.count(state);
+		return pending;
+	}
+
+	/**
+	 * Übernimmt das Ergebnis eines Antrags und aktualisiert den Index sowie die angezeigten Zeilen.
+	 *
+	 * Bei einer gefilterten Ansicht werden nur die Zeilen eingefügt oder entfernt, deren Status sich
+	 * geändert hat.
+	 */
+	private void setResult(int row, FileProcessorResult result) {
+		FileEntry entry = files.get(row);
+		State previous = entry.getResult().state;
+		entry.setResult(result);
+		int removed = previous == null ? -1 : index.remove(previous, row);
+		int added = result.state == null ? -1 : index.add(result.state, row);
+
+		if(filter == null) {
+			fireTableRowsUpdated(row, row);
+		} else if(previous == filter && result.state == filter) {
+			fireTableRowsUpdated(added, added);
+		} else {
+			if(previous == filter) fireTableRowsDeleted(removed, removed);
+			if(result.state == filter) fireTableRowsInserted(added, added);
+		}
 	}
 
+	/**
+	 * Bearbeitet Anträge im Hintergrund.
+	 *
+	 * Wird die Bearbeitung abgebrochen ({@link #cancel}), endet sie ohne Fehler: alle Threads werden beendet,
+	 * das Gesamtdokument wird verworfen und ein ZIP-Archiv nicht veröffentlicht. Fehler beim Schreiben der
+	 * Ausgabe werden dagegen von {@link #get} geworfen.
+	 */
 	private class ProcessEntries extends SwingWorker<Void, FileProcessorResult> {
-		private FileProcessorResult processEntry(int fileId, FileEntry entry) {
-			List<MintReader.Problem> problems = new ArrayList<>();
-			Exception exception = null;
+		private final List<FileEntry> entries;
+		private final int[] rows;
+		private final OutputSink sink;
+		private final Aggregate aggregate;
+		private final EntryProcessor processor;
+		private final ProblemReport report;
+
+		/** Die vorherige Bearbeitung, die erst beendet sein muss, oder null. */
+		private ProcessEntries previous;
+
+		/** Wird gesetzt, sobald die Bearbeitung begonnen hat oder ohne zu beginnen aufgeräumt wurde. */
+		private final AtomicBoolean started = new AtomicBoolean(false);
+
+		/** Wird gezählt, sobald alle Ressourcen der Bearbeitung wieder freigegeben sind. */
+		private final CountDownLatch finished = new CountDownLatch(1);
+
+		/**
+		 * @param rows Die Zeilen der Tabelle, deren Anträge bearbeitet werden.
+		 * @param sink Das Ziel, in das die Zertifikate geschrieben werden.
+		 * @param aggregate Das neue oder zu aktualisierende Gesamtdokument.
+		 * @param processor Der Processor, der die einzelnen Anträge bearbeitet.
+		 * @param report Der Bericht, in den die Probleme geschrieben werden, oder null.
+		 * @param previous Die abgebrochene vorherige Bearbeitung, auf deren Ende gewartet wird, oder null.
+		 */
+		ProcessEntries(int[] rows, OutputSink sink, Aggregate aggregate, EntryProcessor processor, ProblemReport report, ProcessEntries previous) {
+			this.entries = new ArrayList<>();
+			for(int row : rows) entries.add(files.get(row));
+			this.rows = rows;
+			this.sink = sink;
+			this.aggregate = aggregate;
+			this.processor = processor;
+			this.report = report;
+			this.previous = previous;
+		}
+
+		/** Ein bearbeiteter Antrag zusammen mit seinem Index in der Tabelle. */
+		private class Completed {
+			final int index;
+			final EntryProcessor.Result result;
+
+			Completed(int index, EntryProcessor.Result result) {
+				this.index = index;
+				this.result = result;
+			}
+		}
+
+		private void submit(CompletionService<Completed> completion, final int index, final Prefetcher.Fetch fetch) {
+			completion.submit(new Callable<Completed>() {
+				@Override
+				public Completed call() {
+					return new Completed(index, fetch.process(processor));
+				}
+			});
+		}
+
+		/**
+		 * Übergibt einen fertigen Antrag an den Schreib-Thread. Dieser schreibt das Zertifikat, fügt es dem
+		 * Gesamtdokument hinzu und veröffentlicht danach das Ergebnis.
+		 */
+		private void output(WriterStage writer, final int index, final EntryProcessor.Result result) throws InterruptedException {
+			writer.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					FileProcessorResult finished = finishEntry(rows[index], entries.get(index), result);
+					if(report != null) report.write(entries.get(index), finished);
+					publish(finished);
+					setProgress((index + 1) * 90 / entries.size());
+					return null;
+				}
+			});
+		}
+
+		private FileProcessorResult finishEntry(int fileId, FileEntry entry, EntryProcessor.Result result) {
+			Exception exception = result.exception;
+			byte[] written = null;
+			if(result.certificate != null) {
+				try {
+					try(OutputStream out = sink.create(entry.outputName)) {
+						out.write(result.certificate);
+					}
+					written = result.certificate;
+				} catch(IOException exc) {
+					exception = exc;
+				}
+			}
+			// Anträge ohne geschriebenes Zertifikat werden bei einer Aktualisierung aus dem Gesamtdokument entfernt
 			try {
-				MintReader reader = new MintReader(new FileInputStream(entry.inputFile));
-				problems = reader.getProblems();
-				if(new FileProcessorResult(null, problems, fileId).state != State.FAIL) {
-					MintWriter writer = new MintWriter(reader, new ByteArrayInputStream(template), new FileOutputStream(entry.outputFile));
+				Span span = PipelineEvents.begin(Stage.AGGREGATE, entry.outputName);
+				aggregate.put(entry.outputName, written);
+				span.end(written == null ? 0 : written.length, null);
+			} catch(IOException | DocumentException exc) {
+				exception = exc;
+			}
+			return new FileProcessorResult(exception, result.problems, fileId);
+		}
+
+		@Override
+		protected Void doInBackground() throws IOException, DocumentException, ExecutionException {
+			if(started.getAndSet(true)) return null;
+			// Das Gesamtdokument wird direkt beim Erzeugen der einzelnen Zertifikate zusammengesetzt,
+			// sodass die Zertifikate dafür nicht noch einmal aus dem Ausgabeziel gelesen werden müssen.
+			boolean closed = false;
+			try {
+				// Eine abgebrochene Bearbeitung kann noch auf dieselben Dateien und ZIP-Archive zugreifen
+				if(previous != null) previous.finished.await();
+				previous = null;
+
+				// Die Anträge werden parallel und die aufwändigsten zuerst bearbeitet (siehe CostScheduler),
+				// die Ergebnisse aber in der Reihenfolge der Tabelle ausgegeben. Vorzeitig fertige Ergebnisse
+				// warten in done, bis alle vorherigen Anträge ausgegeben sind. Ein neuer Antrag wird immer
+				// erst gestartet, wenn ein Thread frei ist, damit ein später ausgewählter aufwändiger Antrag
+				// nicht hinter bereits eingereihten kleinen Anträgen warten muss. Die Dateien der als nächstes
+				// gestarteten Anträge werden aber bereits vorher gelesen (siehe Prefetcher), sodass die
+				// Bearbeitung nicht auf das Netzlaufwerk warten muss. Geschrieben werden die Ergebnisse
+				// ebenfalls in einem eigenen Thread (siehe WriterStage).
+				ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM);
+				Prefetcher prefetcher = new Prefetcher(READ_AHEAD, READ_AHEAD_BYTES, EntryLimits.DEFAULT);
+				WriterStage writer = new WriterStage(WRITE_QUEUE);
+				try {
+					CompletionService<Completed> completion = new ExecutorCompletionService<>(executor);
+					CostScheduler scheduler = new CostScheduler(entries, SCHEDULE_WINDOW);
+					Deque<Integer> fetchedIndices = new ArrayDeque<>();
+					Deque<Prefetcher.Fetch> fetched = new ArrayDeque<>();
+					EntryProcessor.Result[] done = new EntryProcessor.Result[entries.size()];
+					int running = 0;
+					int next = 0;
+					while(next < entries.size()) {
+						int index;
+						while(fetched.size() < prefetcher.readAhead && (index = scheduler.next(next)) >= 0) {
+							fetchedIndices.add(index);
+							fetched.add(prefetcher.fetch(entries.get(index)));
+						}
+						while(running < PARALLELISM && !fetched.isEmpty()) {
+							submit(completion, fetchedIndices.poll(), fetched.poll());
+							running++;
+						}
+						Completed completed = completion.take().get();
+						running--;
+						done[completed.index] = completed.result;
+
+						for(; next < entries.size() && done[next] != null; next++) {
+							output(writer, next, done[next]);
+							done[next] = null;
+						}
+					}
+					writer.finish();
+				} finally {
+					executor.shutdownNow();
 					writer.close();
+					prefetcher.close();
+					processor.close();
 				}
-			} catch(Exception exc) {
-				exception = exc;
+
+				aggregate.finish(sink);
+				closed = true;
+				try {
+					sink.close();
+				} finally {
+					if(report != null) report.close();
+				}
+				setProgress(100);
+			} catch(InterruptedException | CancellationException e) {
+				// Abgebrochen, die Ausgabe wird in cleanUp verworfen
+			} finally {
+				cleanUp(closed);
 			}
-			return new FileProcessorResult(exception, problems, fileId);
+			return null;
 		}
 
+		/**
+		 * Räumt eine Bearbeitung auf, die abgebrochen wurde, bevor sie begonnen hat. Dann wird
+		 * {@link #doInBackground} nicht mehr aufgerufen.
+		 */
 		@Override
-		protected Void doInBackground() {
-			int i = 0;
-			for(FileEntry entry : files) {
-				publish(processEntry(i++, entry));
-				setProgress(i * 90 / files.size());
+		protected void done() {
+			if(!started.getAndSet(true)) {
+				processor.close();
+				cleanUp(false);
 			}
+		}
 
-			Document outDocument = new Document();
+		/**
+		 * Gibt alle Ressourcen der Bearbeitung frei.
+		 *
+		 * @param closed Ob Ausgabeziel und Bericht bereits geschlossen wurden. Andernfalls wird das
+		 *               Ausgabeziel verworfen und der Bericht geschlossen.
+		 */
+		private void cleanUp(boolean closed) {
 			try {
-				PdfCopy copy = new PdfCopy(outDocument, new FileOutputStream(aggregateDocument));
-				outDocument.open();
-				copy.open();
-				for(FileEntry entry : files) {
-					if(!entry.outputFile.exists()) continue;
-					PdfReader reader = new PdfReader(new FileInputStream(entry.outputFile));
-					copy.addDocument(reader);
+				aggregate.close();
+				if(!closed) {
+					sink.abort();
+					if(report != null) {
+						try {
+							report.close();
+						} catch(IOException e) {
+							e.printStackTrace();
+						}
+					}
 				}
-				copy.close();
-				outDocument.close();
-			} catch (IOException | DocumentException e) {
-				System.out.println("Internal error...");
-				e.printStackTrace();
-				System.exit(1);
+				closeInputs();
+			} finally {
+				finished.countDown();
 			}
-			setProgress(100);
+		}
 
-			return null;
+		/** Gibt die Quellen der Anträge wieder frei, damit z.B. ZIP-Archive nicht gesperrt bleiben. */
+		private void closeInputs() {
+			for(FileEntry entry : entries) {
+				try {
+					entry.input.close();
+				} catch(IOException e) {
+					e.printStackTrace();
+				}
+			}
 		}
 
 		@Override
 		protected void process(List<FileProcessorResult> results) {
 			for(FileProcessorResult result : results) {
-				files.get(result.fileId).setResult(result);
-				fireTableRowsUpdated(result.fileId, result.fileId);
+				setResult(result.fileId, result);
 			}
 		}
 
 	}
 
-	SwingWorker<Void, FileProcessorResult> process() {
-		if(this.worker != null) {
-			this.worker.cancel(true);
-			this.worker = null;
-		}
-		this.worker = new ProcessEntries();
+	/**
+	 * Bildet eine Zeile der (eventuell gefilterten) Ansicht auf die Zeile in der vollständigen Tabelle ab.
+	 *
+	 * @param row Zeile der Ansicht, siehe {@link #getValueAt}.
+	 * @return Die Zeile des Antrags in der vollständigen Tabelle.
+	 */
+	int toEntryRow(int row) {
+		return filter == null ? row : index.row(filter, row);
+	}
+
+	/**
+	 * Startet die Bearbeitung aller Anträge der Tabelle. Das Gesamtdokument wird dabei neu erstellt.
+	 *
+	 * @param sink Das Ziel, in das die Zertifikate geschrieben werden.
+	 * @param print Legt fest, ob die Druckversion der Zertifikate erzeugt wird, siehe {@link MintWriter}.
+	 * @param workerProcesses Legt fest, ob die Anträge in eigenständigen Arbeitsprozessen bearbeitet werden,
+	 *                        siehe {@link WorkerPool}.
+	 * @param report Der Bericht, in den die Probleme geschrieben werden, oder null.
+	 * @return Der (noch nicht gestartete) SwingWorker für die Bearbeitung.
+	 * @throws IOException Wenn das Gesamtdokument nicht angelegt werden kann.
+	 * @throws DocumentException Wenn das Gesamtdokument nicht angelegt werden kann.
+	 */
+	SwingWorker<Void, FileProcessorResult> process(OutputSink sink, boolean print, boolean workerProcesses, ProblemReport report) throws IOException, DocumentException {
+		int[] rows = new int[files.size()];
+		for(int row = 0; row < rows.length; row++) rows[row] = row;
+		return start(rows, sink, new Aggregate(), print, workerProcesses, report);
+	}
+
+	/**
+	 * Bearbeitet einzelne Anträge erneut und aktualisiert nur deren Seiten im bestehenden Gesamtdokument,
+	 * siehe {@link Aggregate#update}. Anträge, für die jetzt kein Zertifikat mehr erzeugt wird, werden aus dem
+	 * Gesamtdokument entfernt.
+	 *
+	 * @param rows Die Zeilen der Anträge in der vollständigen Tabelle, siehe {@link #toEntryRow}.
+	 * @param directory Das Ausgabeverzeichnis, welches auch das bisherige Gesamtdokument enthält.
+	 * @param print Legt fest, ob die Druckversion der Zertifikate erzeugt wird, siehe {@link MintWriter}.
+	 * @param workerProcesses Legt fest, ob die Anträge in eigenständigen Arbeitsprozessen bearbeitet werden.
+	 * @return Der (noch nicht gestartete) SwingWorker für die Bearbeitung.
+	 * @throws IOException Wenn kein passendes Gesamtdokument mit Seitenindex vorhanden ist.
+	 * @throws DocumentException Wenn das neue Gesamtdokument nicht angelegt werden kann.
+	 */
+	SwingWorker<Void, FileProcessorResult> update(int[] rows, File directory, boolean print, boolean workerProcesses) throws IOException, DocumentException {
+		return start(rows, new DirectorySink(directory), Aggregate.update(directory), print, workerProcesses, null);
+	}
+
+	private SwingWorker<Void, FileProcessorResult> start(int[] rows, OutputSink sink, Aggregate aggregate, boolean print, boolean workerProcesses, ProblemReport report) {
+		// Die neue Bearbeitung wartet, bis die abgebrochene vorherige Bearbeitung aufgeräumt hat
+		ProcessEntries previous = this.worker;
+		if(previous != null) previous.cancel(true);
+		EntryProcessor processor = workerProcesses
+			? new WorkerPool(PARALLELISM, EntryLimits.DEFAULT, print)
+			: new LocalProcessor(templates, EntryLimits.DEFAULT, print);
+		this.worker = new ProcessEntries(rows, sink, aggregate, processor, report, previous);
 		return this.worker;
 	}
 
@@ -0,0 +1,133 @@
+package mintec;
+
+import java.util.Date;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+
+/**
+ * Die Zellen des Antragsformulars, die in einem einzigen Durchlauf aus der Excel-Tabelle gelesen werden.
+ *
+ * {@link MintReader} liest viele Zellen mehrfach (z.B. erst zum Zählen der ausgefüllten Felder und danach
+ * zum Auslesen der Werte). Statt dafür jedes Mal die Zelle in der Tabelle zu suchen und ihren Typ zu
+ * bestimmen, werden alle Zellen des Formulars einmal gelesen und ihre Werte hier zwischengespeichert.
+ * Alle weiteren Zugriffe sind dann einfache Zugriffe auf Arrays.
+ *
+ * Formelzellen werden mit ihrem zuletzt gespeicherten Ergebnis behandelt. Fehlende Zellen gelten als leer.
+ */
+class FormCells {
+	/** Die Art des Inhalts einer Zelle. */
+	enum Kind {
+		BLANK, TEXT, NUMBER, OTHER,
+		/**
+		 * Eine Formel, deren Ergebnis nicht in der Datei gespeichert ist (die Datei wurde mit einem Programm
+		 * gespeichert, das die Formeln nicht auswertet). POI liefert für solche Zellen das Ergebnis 0, das hier
+		 * nicht als Zahl gilt. Das kann nur bei .xlsx-Dateien erkannt werden; in .xls-Dateien ist für jede
+		 * Formel ein Ergebnis gespeichert.
+		 */
+		MISSING_RESULT
+	}
+
+	private final int columns;
+	private final int rows;
+	private final Kind[] kinds;
+	private final String[] texts;
+	private final double[] numbers;
+	private final Cell[] cells;
+
+	/**
+	 * Liest alle Zellen des Formulars.
+	 *
+	 * @param sheet Die Excel-Tabelle des Antrags.
+	 * @param columns Anzahl der Spalten des Formulars (ab Spalte A).
+	 * @param rows Anzahl der Zeilen des Formulars (ab Zeile 1).
+	 */
+	FormCells(Sheet sheet, int columns, int rows) {
+		this.columns = columns;
+		this.rows = rows;
+		this.kinds = new Kind[columns * rows];
+		this.texts = new String[columns * rows];
+		this.numbers = new double[columns * rows];
+		this.cells = new Cell[columns * rows];
+
+		for(int row = 1; row <= rows; row++) {
+			Row cellRow = sheet.getRow(row - 1);
+			for(int column = 1; column <= columns; column++) {
+				int index = index(column, row);
+				Cell cell = cellRow == null ? null : cellRow.getCell(column - 1);
+				cells[index] = cell;
+				kinds[index] = Kind.BLANK;
+				if(cell == null) continue;
+
+				int type = cell.getCellType();
+				if(type == Cell.CELL_TYPE_FORMULA) {
+					if(cell instanceof XSSFCell && ((XSSFCell)cell).getRawValue() == null) {
+						kinds[index] = Kind.MISSING_RESULT;
+						continue;
+					}
+					type = cell.getCachedFormulaResultType();
+				}
+				switch(type) {
+					case Cell.CELL_TYPE_STRING:
+						texts[index] = cell.getStringCellValue().trim();
+						kinds[index] = texts[index].isEmpty() ? Kind.BLANK : Kind.TEXT;
+						break;
+					case Cell.CELL_TYPE_NUMERIC:
+						numbers[index] = cell.getNumericCellValue();
+						kinds[index] = Kind.NUMBER;
+						break;
+					case Cell.CELL_TYPE_BLANK:
+						break;
+					default:
+						kinds[index] = Kind.OTHER;
+				}
+			}
+		}
+	}
+
+	private int index(int column, int row) {
+		if(column < 1 || column > columns || row < 1 || row > rows) {
+			throw new IndexOutOfBoundsException("Zelle außerhalb des Formulars: Spalte " + column + ", Zeile " + row);
+		}
+		return (row - 1) * columns + (column - 1);
+	}
+
+	/**
+	 * @param column Index der Spalte (1-basiert, 1 ist die erste Spalte).
+	 * @param row Index der Zeile (1-basiert, 1 ist die erste Zeile).
+	 * @return Die Art des Inhalts der Zelle. Zellen, die nur Leerzeichen enthalten, gelten als leer.
+	 */
+	Kind kind(int column, int row) {
+		return kinds[index(column, row)];
+	}
+
+	/**
+	 * @return Der Text einer Textzelle (ohne führende und abschließende Leerzeichen), oder null wenn die
+	 *         Zelle keinen Text enthält.
+	 */
+	String text(int column, int row) {
+		return texts[index(column, row)];
+	}
+
+	/**
+	 * @return Der Zahlenwert einer Zahlzelle, oder 0 wenn die Zelle keine Zahl enthält.
+	 */
+	double number(int column, int row) {
+		return numbers[index(column, row)];
+	}
+
+	/**
+	 * Liest den Inhalt einer Zelle als Datum.
+	 *
+	 * @return Das Datum, oder null wenn die Zelle leer ist.
+	 * @throws IllegalStateException Wenn die Zelle kein Datum enthält.
+	 */
+	Date date(int column, int row) {
+		int index = index(column, row);
+		if(kinds[index] == Kind.BLANK) return null;
+		if(kinds[index] != Kind.NUMBER) throw new IllegalStateException("Zelle enthält kein Datum");
+		return cells[index].getDateCellValue();
+	}
+}
@@ -6,24 +6,43 @@ import java.awt.FlowLayout;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
 
-import org.apache.poi.util.IOUtils;
+import com.itextpdf.text.DocumentException;
 
 import java.awt.event.ActionListener;
 import java.awt.event.ActionEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 class GUI extends JFrame {
 
 	private static final long serialVersionUID = -4233818212766136444L;
+
+	/** Dateiname des ZIP-Archivs, wenn die Zertifikate als ZIP-Archiv gespeichert werden. */
+	private static final String ZIP_OUTPUT_NAME = "zertifikate.zip";
+
+	/** Dateiname (ohne Endung) des Problemberichts. */
+	private static final String REPORT_NAME = "probleme";
+
 	private final File outputsDirectory;
 	private FileTable fileProcessors;
+	private final List<School> schools;
+	private final JComboBox<School> schoolSelection;
+
+	/** Die Namen der Ausgabedateien aller Anträge der Tabelle. */
+	private final Set<String> outputNames = new HashSet<>();
 
 	private JProgressBar progressBar;
+	private JTable fileProcessorTable;
 
 	public static void main(String[] args) {
 		EventQueue.invokeLater(new Runnable() {
@@ -49,18 +68,27 @@ class GUI extends JFrame {
 	/**
 	 * Create the frame.
 	 */
-	private GUI(File outputsDirectory) throws IOException {
+	private GUI(File outputsDirectory) throws IOException, DocumentException {
 		org.apache.log4j.BasicConfigurator.configure();
 		this.outputsDirectory = outputsDirectory;
 
+		File path = new File(GUI.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+		File folder = path.getParentFile();
+		System.out.println(String.format("Loading schools from: %s", folder.toString()));
+		this.schools = School.load(folder);
+
 		setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
-		setBounds(100, 100, 450, 300);
+		setBounds(100, 100, 700, 400);
 		JPanel contentPane = new JPanel(new BorderLayout());
 		setContentPane(contentPane);
 
 		JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEADING));
 		contentPane.add(controls, BorderLayout.SOUTH);
 
+		schoolSelection = new JComboBox<>(schools.toArray(new School[schools.size()]));
+		schoolSelection.setToolTipText("Schule, der die hinzugefügten Anträge zugeordnet werden");
+		controls.add(schoolSelection);
+
 		JButton btnAdd = new JButton("Hinzufügen");
 		btnAdd.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent arg0) {
@@ -75,8 +103,15 @@ class GUI extends JFrame {
 					if(result.isDirectory()) files = result.listFiles(excel);
 					for(File file : files) {
 						if(file.isDirectory()) continue;
-						File out = new File(GUI.this.outputsDirectory.getAbsolutePath() + "/" + file.getName() + ".pdf");
-						GUI.this.fileProcessors.addEntry(new FileEntry(file, out));
+						if(ExcelFilter.isZipFile(file.getName())) {
+							try {
+								for(InputSource source : ZipInput.entries(file)) addSource(source);
+							} catch(IOException e) {
+								JOptionPane.showMessageDialog(GUI.this, "Fehler beim Lesen des ZIP-Archivs " + file.getName() + ": " + e.getLocalizedMessage(), "Fehler", JOptionPane.ERROR_MESSAGE);
+							}
+						} else {
+							addSource(new FileInput(file));
+						}
 					}
 				}
 
@@ -84,41 +119,168 @@ class GUI extends JFrame {
 		});
 		controls.add(btnAdd);
 
+		final JCheckBox chkZip = new JCheckBox("Als ZIP-Archiv speichern");
+		controls.add(chkZip);
+
+		final JCheckBox chkPrint = new JCheckBox("Druckversion");
+		chkPrint.setToolTipText("Formularfelder reduzieren, damit das Gesamtdokument schneller angezeigt und gedruckt werden kann");
+		controls.add(chkPrint);
+
+		final JCheckBox chkWorkers = new JCheckBox("Separate Prozesse");
+		chkWorkers.setToolTipText("Anträge auf mehrere Java-Prozesse verteilen (für sehr große Bearbeitungen)");
+		controls.add(chkWorkers);
+
+		final JComboBox<String> reportSelection = new JComboBox<>(new String[]{ "Kein Problembericht", "Problembericht als CSV", "Problembericht als JSON" });
+		reportSelection.setToolTipText("Alle festgestellten Probleme zusätzlich in " + REPORT_NAME + ".csv bzw. .json im Ausgabeverzeichnis speichern");
+		controls.add(reportSelection);
+
 		JButton btnProcess = new JButton("Zertifikate erstellen");
 		btnProcess.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent ignored) {
-				SwingWorker<Void, FileProcessorResult> worker = GUI.this.fileProcessors.process();
-				worker.addPropertyChangeListener(new PropertyChangeListener() {
-					public void propertyChange(PropertyChangeEvent event) {
-						if("progress".equals(event.getPropertyName())) {
-							GUI.this.progressBar.setValue((Integer)event.getNewValue());
-						}
+				OutputSink sink = new DirectorySink(GUI.this.outputsDirectory);
+				if(chkZip.isSelected()) {
+					File archive = new File(GUI.this.outputsDirectory, ZIP_OUTPUT_NAME);
+					try {
+						sink = new ZipSink(archive);
+					} catch(IOException e) {
+						JOptionPane.showMessageDialog(GUI.this, "Fehler beim Anlegen von " + archive.getName() + ": " + e.getLocalizedMessage(), "Fehler", JOptionPane.ERROR_MESSAGE);
+						return;
+					}
+				}
+				ProblemReport report = null;
+				try {
+					switch(reportSelection.getSelectedIndex()) {
+						case 1: report = new CsvProblemReport(new File(GUI.this.outputsDirectory, REPORT_NAME + ".csv")); break;
+						case 2: report = new JsonProblemReport(new File(GUI.this.outputsDirectory, REPORT_NAME + ".json")); break;
 					}
-				});
-				worker.execute();
+				} catch(IOException e) {
+					JOptionPane.showMessageDialog(GUI.this, "Fehler beim Anlegen des Problemberichts: " + e.getLocalizedMessage(), "Fehler", JOptionPane.ERROR_MESSAGE);
+					try {
+						sink.close();
+					} catch(IOException closeError) {
+						closeError.printStackTrace();
+					}
+					return;
+				}
+				try {
+					execute(GUI.this.fileProcessors.process(sink, chkPrint.isSelected(), chkWorkers.isSelected(), report));
+				} catch(IOException | DocumentException e) {
+					JOptionPane.showMessageDialog(GUI.this, "Fehler beim Anlegen des Gesamtdokuments: " + e.getLocalizedMessage(), "Fehler", JOptionPane.ERROR_MESSAGE);
+					try {
+						sink.close();
+						if(report != null) report.close();
+					} catch(IOException closeError) {
+						closeError.printStackTrace();
+					}
+				}
 			}
 		});
 		controls.add(btnProcess);
 
+		JButton btnUpdate = new JButton("Auswahl aktualisieren");
+		btnUpdate.setToolTipText("Nur die ausgewählten Anträge neu bearbeiten und ihre Seiten in " + Aggregate.NAME + " ersetzen");
+		btnUpdate.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent ignored) {
+				if(chkZip.isSelected()) {
+					JOptionPane.showMessageDialog(GUI.this, "Einzelne Zertifikate können nur ohne ZIP-Archiv aktualisiert werden.", "Fehler", JOptionPane.ERROR_MESSAGE);
+					return;
+				}
+				int[] rows = GUI.this.fileProcessorTable.getSelectedRows();
+				if(rows.length == 0) {
+					JOptionPane.showMessageDialog(GUI.this, "Bitte zuerst die zu aktualisierenden Anträge in der Tabelle auswählen.", "Fehler", JOptionPane.ERROR_MESSAGE);
+					return;
+				}
+				for(int i = 0; i < rows.length; i++) {
+					rows[i] = GUI.this.fileProcessors.toEntryRow(GUI.this.fileProcessorTable.convertRowIndexToModel(rows[i]));
+				}
+				try {
+					execute(GUI.this.fileProcessors.update(rows, GUI.this.outputsDirectory, chkPrint.isSelected(), chkWorkers.isSelected()));
+				} catch(IOException | DocumentException e) {
+					JOptionPane.showMessageDialog(GUI.this, "Fehler beim Aktualisieren des Gesamtdokuments: " + e.getLocalizedMessage(), "Fehler", JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		});
+		controls.add(btnUpdate);
+
 		JPanel main = new JPanel(new BorderLayout());
 		main.setBorder(new EmptyBorder(10,10,10,10));
 		contentPane.add(main, BorderLayout.CENTER);
 
+		JPanel header = new JPanel(new BorderLayout());
+		main.add(header, BorderLayout.NORTH);
+
 		JLabel lblAusgabeverzeichnis = new JLabel("Ausgabeverzeichnis: " + outputsDirectory.getAbsolutePath());
-		main.add(lblAusgabeverzeichnis, BorderLayout.NORTH);
+		header.add(lblAusgabeverzeichnis, BorderLayout.NORTH);
 
 		progressBar = new JProgressBar(0, 100);
 		main.add(progressBar, BorderLayout.SOUTH);
 
-
-		final byte[] template;
-		File path = new File(GUI.class.getProtectionDomain().getCodeSource().getLocation().getPath());
-		File folder = path.getParentFile();
-		System.out.println(String.format("Loading template from: %s", folder.toString()));
-		template = IOUtils.toByteArray(new FileInputStream(new File(folder.getAbsolutePath() + "/template.pdf")));
-		fileProcessors = new FileTable(template, new File(outputsDirectory.getAbsolutePath() + "/all.pdf"));
-		JTable fileProcessorTable = new JTable(fileProcessors);
+		fileProcessors = new FileTable();
+		fileProcessorTable = new JTable(fileProcessors);
 		main.add(new JScrollPane(fileProcessorTable), BorderLayout.CENTER);
+
+		JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEADING));
+		header.add(filterPanel, BorderLayout.SOUTH);
+
+		final JComboBox<String> filterSelection = new JComboBox<>(new String[]{ "Alle Anträge", "Nur Fehler", "Nur Warnungen", "Nur fehlerfreie" });
+		final FileProcessorResult.State[] filters = { null, FileProcessorResult.State.FAIL, FileProcessorResult.State.WARN, FileProcessorResult.State.OK };
+		filterSelection.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent ignored) {
+				GUI.this.fileProcessors.setFilter(filters[filterSelection.getSelectedIndex()]);
+			}
+		});
+		filterPanel.add(filterSelection);
+
+		final JLabel lblCounts = new JLabel();
+		filterPanel.add(lblCounts);
+		fileProcessors.addTableModelListener(new TableModelListener() {
+			public void tableChanged(TableModelEvent event) {
+				lblCounts.setText(String.format("OK: %d   Warnungen: %d   Fehler: %d   Offen: %d",
+					GUI.this.fileProcessors.getCount(FileProcessorResult.State.OK),
+					GUI.this.fileProcessors.getCount(FileProcessorResult.State.WARN),
+					GUI.this.fileProcessors.getCount(FileProcessorResult.State.FAIL),
+					GUI.this.fileProcessors.getPendingCount()));
+			}
+		});
+	}
+
+	private void execute(final SwingWorker<Void, FileProcessorResult> worker) {
+		worker.addPropertyChangeListener(new PropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent event) {
+				if("progress".equals(event.getPropertyName())) {
+					GUI.this.progressBar.setValue((Integer)event.getNewValue());
+				} else if("state".equals(event.getPropertyName()) && event.getNewValue() == SwingWorker.StateValue.DONE) {
+					showFailure(worker);
+				}
+			}
+		});
+		worker.execute();
+	}
+
+	/** Zeigt an, wenn eine Bearbeitung wegen eines Fehlers beim Schreiben der Ausgabe nicht beendet wurde. */
+	private void showFailure(SwingWorker<Void, FileProcessorResult> worker) {
+		try {
+			worker.get();
+		} catch(CancellationException | InterruptedException e) {
+			// Abgebrochen, weil eine neue Bearbeitung gestartet wurde
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			while(cause instanceof ExecutionException && cause.getCause() != null) cause = cause.getCause();
+			cause.printStackTrace();
+			JOptionPane.showMessageDialog(GUI.this, "Fehler bei der Bearbeitung: " + cause.getLocalizedMessage(), "Fehler", JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+	private void addSource(InputSource source) {
+		School school = (School)schoolSelection.getSelectedItem();
+		// Bei mehreren Schulen erhält jede Schule ein eigenes Unterverzeichnis, damit sich gleichnamige
+		// Anträge verschiedener Schulen nicht gegenseitig überschreiben.
+		String baseName = source.getName();
+		if(schools.size() > 1) baseName = school.key + "/" + baseName;
+		// Gleichnamige Anträge aus verschiedenen Verzeichnissen oder Archiven erhalten eine laufende Nummer
+		String outputName = baseName + ".pdf";
+		for(int copy = 2; !outputNames.add(outputName); copy++) outputName = baseName + " (" + copy + ").pdf";
+		fileProcessors.addEntry(new FileEntry(source, outputName, school));
 	}
 }
 
@@ -0,0 +1,38 @@
+package mintec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Eine Quelle, aus der die Excel-Datei eines Antrags gelesen werden kann.
+ *
+ * Anträge liegen entweder als einzelne Dateien vor ({@link FileInput}) oder als Einträge eines
+ * ZIP-Archivs ({@link ZipInput}). In beiden Fällen wird der Antrag direkt als Stream gelesen, ohne
+ * vorher auf die Festplatte entpackt zu werden.
+ *
+ * Mit {@link #close} werden die Ressourcen freigegeben, die beim Lesen belegt wurden (z.B. das geöffnete
+ * ZIP-Archiv). Die Quelle kann danach erneut geöffnet werden.
+ */
+interface InputSource extends Closeable {
+	/**
+	 * @return Der Name des Antrags, wie er in der Tabelle angezeigt wird.
+	 */
+	String getName();
+
+	/**
+	 * Öffnet einen neuen Stream, aus dem der Inhalt des Antrags gelesen werden kann.
+	 *
+	 * @return InputStream für die Excel-Datei. Der Aufrufer ist für das Schließen verantwortlich.
+	 * @throws IOException Wenn die Quelle nicht geöffnet werden kann.
+	 */
+	InputStream open() throws IOException;
+
+	/**
+	 * Die Größe des Antrags, ohne ihn zu lesen. Wird zur Abschätzung des Aufwands verwendet, siehe
+	 * {@link CostScheduler}.
+	 *
+	 * @return Größe der (entpackten) Excel-Datei in Bytes, oder -1 wenn sie nicht bekannt ist.
+	 */
+	long size();
+}
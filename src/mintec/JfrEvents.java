@@ -0,0 +1,96 @@
+package mintec;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import mintec.FileProcessorResult.State;
+import mintec.PipelineEvents.Recorder;
+import mintec.PipelineEvents.Span;
+import mintec.PipelineEvents.Stage;
+
+/**
+ * Die JFR-Ereignisse zu {@link PipelineEvents}.
+ *
+ * Diese Klasse verwendet die JFR-API direkt und wird deshalb nur übersetzt und geladen, wenn JFR vorhanden
+ * ist. Die Ereignisse werden ohne Stacktrace aufgezeichnet, da der Bearbeitungsschritt bereits im Ereignis
+ * steht.
+ */
+final class JfrEvents implements Recorder {
+	@Name("mintec.Entry")
+	@Label("Antrag")
+	@Category({ "MINT-EC", "Zertifikate" })
+	@Description("Bearbeitung eines Antrags, vom Lesen bis zum fertigen Zertifikat")
+	@StackTrace(false)
+	static class EntryEvent extends Event {
+		@Label("Datei")
+		String file;
+
+		@Label("Größe")
+		@DataAmount
+		long bytes;
+
+		@Label("Status")
+		String state;
+	}
+
+	@Name("mintec.Stage")
+	@Label("Bearbeitungsschritt")
+	@Category({ "MINT-EC", "Zertifikate" })
+	@Description("Ein einzelner Schritt der Bearbeitung eines Antrags")
+	@StackTrace(false)
+	static class StageEvent extends Event {
+		@Label("Schritt")
+		String stage;
+
+		@Label("Datei")
+		String file;
+
+		@Label("Größe")
+		@DataAmount
+		long bytes;
+
+		@Label("Status")
+		String state;
+	}
+
+	JfrEvents() {
+	}
+
+	@Override
+	public Span beginStage(Stage stage, String file) {
+		final StageEvent event = new StageEvent();
+		if(!event.isEnabled()) return PipelineEvents.NONE;
+		event.stage = stage.name();
+		event.file = file;
+		event.begin();
+		return new Span() {
+			@Override
+			public void end(long bytes, State state) {
+				event.bytes = bytes;
+				event.state = state == null ? null : state.name();
+				event.commit();
+			}
+		};
+	}
+
+	@Override
+	public Span beginEntry(String file) {
+		final EntryEvent event = new EntryEvent();
+		if(!event.isEnabled()) return PipelineEvents.NONE;
+		event.file = file;
+		event.begin();
+		return new Span() {
+			@Override
+			public void end(long bytes, State state) {
+				event.bytes = bytes;
+				event.state = state == null ? null : state.name();
+				event.commit();
+			}
+		};
+	}
+}
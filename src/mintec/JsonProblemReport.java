@@ -0,0 +1,76 @@
+package mintec;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Schreibt die Probleme als JSON-Datei.
+ *
+ * Die Datei enthält ein Array mit einem Objekt pro Problem, mit den Feldern "datei", "status", "zelle",
+ * "fehler" und "meldung". Das Array wird fortlaufend geschrieben und erst beim Schließen beendet.
+ */
+class JsonProblemReport implements ProblemReport {
+	private final Writer out;
+	private boolean first = true;
+
+	JsonProblemReport(File file) throws IOException {
+		this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+		out.write("[");
+	}
+
+	@Override
+	public void write(FileEntry entry, FileProcessorResult result) throws IOException {
+		String file = entry.input.getName();
+		String state = String.valueOf(result.state);
+		if(result.error != null) object(file, state, null, true, result.error);
+		for(MintReader.Problem problem : result.problems) {
+			object(file, state, problem.column + problem.row, problem.fatal, problem.text);
+		}
+	}
+
+	private void object(String file, String state, String cell, boolean fatal, String message) throws IOException {
+		out.write(first ? "\n" : ",\n");
+		first = false;
+		out.write("{\"datei\":");
+		string(file);
+		out.write(",\"status\":");
+		string(state);
+		out.write(",\"zelle\":");
+		if(cell == null) out.write("null");
+		else string(cell);
+		out.write(",\"fehler\":");
+		out.write(Boolean.toString(fatal));
+		out.write(",\"meldung\":");
+		string(message);
+		out.write("}");
+	}
+
+	private void string(String value) throws IOException {
+		out.write('"');
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch(c) {
+				case '"': out.write("\\\""); break;
+				case '\\': out.write("\\\\"); break;
+				case '\n': out.write("\\n"); break;
+				case '\r': out.write("\\r"); break;
+				case '\t': out.write("\\t"); break;
+				default:
+					if(c < 0x20) out.write(String.format("\\u%04x", (int)c));
+					else out.write(c);
+			}
+		}
+		out.write('"');
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.write("\n]\n");
+		out.close();
+	}
+}
@@ -0,0 +1,50 @@
+package mintec;
+
+/**
+ * Die Berechnung des Notendurchschnitts und der Stufe in Abschnitt I des Antragsformulars (Formularversion
+ * 1.0.0) in Java.
+ *
+ * Das Formular berechnet den Notendurchschnitt mit einer Formel. Deren Ergebnis steht aber nur dann in der Datei,
+ * wenn das Programm, mit dem der Antrag gespeichert wurde, die Formeln auch ausgewertet hat. Statt die Formel
+ * mit POI auszuwerten (was sehr langsam ist), wird der Durchschnitt hier direkt aus den eingegebenen Noten
+ * berechnet. Die Stufen zum Durchschnitt (9, 11 und 13 Punkte) sind dieselben wie in der Prüfung der Stufe
+ * in Zelle H6.
+ *
+ * Die Stufen der Abschnitte II und III werden nicht berechnet, da ihre Formeln hier nicht bekannt sind. Fehlen
+ * sie in der Datei, meldet {@link MintReader} einen Fehler.
+ *
+ * Alle Methoden sind reine Funktionen ohne Zugriff auf die Excel-Tabelle.
+ */
+final class LevelCalculator {
+	/** Mindestpunktzahl für die Stufen 1, 2 und 3. */
+	private static final double LEVEL1_POINTS = 9, LEVEL2_POINTS = 11, LEVEL3_POINTS = 13;
+
+	private LevelCalculator() {
+	}
+
+	/**
+	 * Der Durchschnitt der Noten der Fächer aus Abschnitt I.
+	 *
+	 * @param grades Die Noten der Fächer, in Punkten.
+	 * @return Der Durchschnitt, oder 0 wenn keine Noten angegeben sind.
+	 */
+	static double mean(double[] grades) {
+		if(grades.length == 0) return 0;
+		double sum = 0;
+		for(double grade : grades) sum += grade;
+		return sum / grades.length;
+	}
+
+	/**
+	 * Die Stufe, die mit einem Notendurchschnitt erreicht wird.
+	 *
+	 * @param points Durchschnitt, in Punkten.
+	 * @return Die Stufe (0 bis 3).
+	 */
+	static int meanLevel(double points) {
+		if(points >= LEVEL3_POINTS) return 3;
+		if(points >= LEVEL2_POINTS) return 2;
+		if(points >= LEVEL1_POINTS) return 1;
+		return 0;
+	}
+}
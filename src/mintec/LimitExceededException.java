@@ -0,0 +1,12 @@
+package mintec;
+
+import java.io.IOException;
+
+/** Wird geworfen, wenn die Bearbeitung eines Antrags eine der {@link EntryLimits} überschreitet. */
+class LimitExceededException extends IOException {
+	private static final long serialVersionUID = 4658816150623414713L;
+
+	LimitExceededException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,417 @@
+package mintec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.poifs.filesystem.DocumentInputStream;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.TextField;
+
+import mintec.FileProcessorResult.State;
+import mintec.PipelineEvents.Span;
+import mintec.PipelineEvents.Stage;
+
+/**
+ * Erzeugt die Zertifikate im laufenden Prozess, unter Einhaltung der {@link EntryLimits}.
+ *
+ * Diese Klasse kann von mehreren Threads gleichzeitig verwendet werden. Jeder Antrag wird in einem eigenen
+ * Hintergrund-Thread bearbeitet. Überschreitet die Bearbeitung das Zeitlimit, wird nicht weiter auf den
+ * Thread gewartet, sodass die restlichen Anträge ohne Verzögerung bearbeitet werden können. Der
+ * abgebrochene Thread wird unterbrochen und blockiert das Beenden des Programms nicht.
+ *
+ * POI reagiert allerdings nicht auf die Unterbrechung, ein abgebrochener Thread rechnet also weiter, bis der
+ * Antrag fertig eingelesen ist. Damit sich solche Threads bei mehreren problematischen Anträgen nicht
+ * ansammeln, wartet die Bearbeitung des nächsten Antrags, solange bereits {@link #MAX_ABANDONED} davon
+ * laufen. Wirklich abbrechen lässt sich nur ein eigener Prozess: der {@link WorkerPool} beendet deshalb
+ * einen Arbeitsprozess nach einem abgebrochenen Antrag und ersetzt ihn durch einen neuen Prozess.
+ */
+class LocalProcessor implements EntryProcessor {
+	/** Höchstzahl der abgebrochenen, aber noch laufenden Threads. */
+	static final int MAX_ABANDONED = 2;
+
+	/**
+	 * Bis zu dieser entpackten Größe wird das Komprimierungsverhältnis eines Bestandteils nicht geprüft, da
+	 * kleine Bestandteile oft sehr gut komprimierbar sind.
+	 */
+	private static final long RATIO_GRACE_BYTES = 100 << 10;
+
+	/** Die Phasen der Bearbeitung eines Antrags, siehe {@link #process}. */
+	private static final int QUEUED = 0, RUNNING = 1, FINISHED = 2, ABANDONED = 3;
+
+	private final TemplateCache templates;
+	private final EntryLimits limits;
+	private final boolean print;
+	private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, "mintec-entry");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/** Anzahl der abgebrochenen Threads, die noch laufen. */
+	private int abandoned = 0;
+
+	/**
+	 * @param templates Die Vorlagen für die Zertifikate der einzelnen Schulen.
+	 * @param limits Die Grenzen für die Bearbeitung eines einzelnen Antrags.
+	 * @param print Legt fest, ob die Druckversion der Zertifikate erzeugt wird, siehe {@link MintWriter}.
+	 */
+	LocalProcessor(TemplateCache templates, EntryLimits limits, boolean print) {
+		this.templates = templates;
+		this.limits = limits;
+		this.print = print;
+	}
+
+	@Override
+	public Result process(final FileEntry entry) {
+		try {
+			awaitAbandoned();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return failure(e);
+		}
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(limits.timeoutSeconds);
+		final AtomicInteger phase = new AtomicInteger(QUEUED);
+		Future<Result> future = executor.submit(new Callable<Result>() {
+			@Override
+			public Result call() {
+				if(!phase.compareAndSet(QUEUED, RUNNING)) return null;
+				try {
+					return processUnbounded(entry, deadline);
+				} finally {
+					if(!phase.compareAndSet(RUNNING, FINISHED)) abandonedFinished();
+				}
+			}
+		});
+		try {
+			return future.get(limits.timeoutSeconds, TimeUnit.SECONDS);
+		} catch(TimeoutException e) {
+			abandon(future, phase);
+			return failure(new LimitExceededException("Zeitlimit von " + limits.timeoutSeconds + " Sekunden überschritten"));
+		} catch(InterruptedException e) {
+			abandon(future, phase);
+			Thread.currentThread().interrupt();
+			return failure(e);
+		} catch(ExecutionException e) {
+			// Die Exception wird mit ihrem Typ übernommen. Ein Error (z.B. eine fehlende Klasse) betrifft
+			// nur diesen Antrag und bleibt deshalb in die ExecutionException verpackt.
+			Throwable cause = e.getCause();
+			return failure(cause instanceof Exception ? (Exception)cause : e);
+		}
+	}
+
+	/** Bricht die Bearbeitung ab. Ein bereits laufender Thread wird gezählt, bis er tatsächlich beendet ist. */
+	private void abandon(Future<Result> future, AtomicInteger phase) {
+		if(phase.compareAndSet(RUNNING, ABANDONED)) {
+			synchronized(this) {
+				abandoned++;
+			}
+		} else {
+			phase.compareAndSet(QUEUED, ABANDONED);
+		}
+		future.cancel(true);
+	}
+
+	private synchronized void abandonedFinished() {
+		abandoned--;
+		notifyAll();
+	}
+
+	private synchronized void awaitAbandoned() throws InterruptedException {
+		while(abandoned >= MAX_ABANDONED) wait();
+	}
+
+	private Result processUnbounded(FileEntry entry, long deadline) {
+		List<MintReader.Problem> problems = new ArrayList<>();
+		try {
+			byte[] workbook;
+			try(InputStream in = entry.input.open()) {
+				workbook = readLimited(in, limits, deadline);
+			}
+
+			String name = entry.input.getName();
+			Span span = PipelineEvents.begin(Stage.OPEN, name);
+			Workbook book = openWorkbook(workbook, limits);
+			span.end(workbook.length, null);
+
+			span = PipelineEvents.begin(Stage.EXTRACT, name);
+			MintReader reader = new MintReader(book);
+			problems = reader.getProblems();
+			State state = new FileProcessorResult(null, problems, -1).state;
+			span.end(workbook.length, state);
+			if(state == State.FAIL) {
+				return new Result(problems, null, null);
+			}
+
+			span = PipelineEvents.begin(Stage.TEMPLATE, name);
+			PdfReader template = templates.get(entry.school);
+			span.end(template.getFileLength(), null);
+
+			ByteArrayOutputStream certificate = new ByteArrayOutputStream();
+			Map<String, TextField> fieldCache = !print ? null : templates.borrowFields(entry.school);
+			try {
+				span = PipelineEvents.begin(Stage.STAMP, name);
+				MintWriter writer = new MintWriter(reader, entry.school, template, certificate, fieldCache);
+				span.end(writer.getFilledBytes(), null);
+
+				span = PipelineEvents.begin(Stage.CLOSE, name);
+				writer.close();
+				span.end(certificate.size(), state);
+			} finally {
+				if(fieldCache != null) templates.releaseFields(entry.school, fieldCache);
+			}
+			return new Result(problems, null, certificate.toByteArray());
+		} catch(OutOfMemoryError e) {
+			// Die Daten des Antrags werden nur lokal referenziert und sind hier bereits wieder freigegeben.
+			return new Result(problems, new LimitExceededException("Nicht genügend Arbeitsspeicher"), null);
+		} catch(Exception e) {
+			return new Result(problems, e, null);
+		}
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	private static Result failure(Exception exception) {
+		return new Result(new ArrayList<MintReader.Problem>(), exception, null);
+	}
+
+	/**
+	 * Liest den gesamten Inhalt eines Streams, höchstens aber {@link EntryLimits#maxInputBytes} Bytes.
+	 *
+	 * @param in Der Stream, aus dem gelesen wird.
+	 * @param limits Die Grenzen, die beim Lesen eingehalten werden müssen.
+	 * @param deadline Der Zeitpunkt (siehe {@link System#nanoTime()}), bis zu dem das Lesen abgeschlossen sein muss.
+	 * @return Der gelesene Inhalt.
+	 * @throws IOException Wenn das Lesen fehlschlägt oder eine Grenze überschritten wird.
+	 */
+	static byte[] readLimited(InputStream in, EntryLimits limits, long deadline) throws IOException {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		byte[] buffer = new byte[64 * 1024];
+		int read;
+		while((read = in.read(buffer)) != -1) {
+			if(Thread.interrupted() || System.nanoTime() > deadline) {
+				throw new LimitExceededException("Zeitlimit beim Lesen überschritten");
+			}
+			if(data.size() + read > limits.maxInputBytes) {
+				throw new LimitExceededException("Datei ist größer als " + (limits.maxInputBytes >> 20) + " MB");
+			}
+			data.write(buffer, 0, read);
+		}
+		return data.toByteArray();
+	}
+
+	/**
+	 * Öffnet eine Excel-Datei, unter Einhaltung der {@link EntryLimits}.
+	 *
+	 * POI entpackt alle Bestandteile einer .xlsx-Datei vollständig in den Arbeitsspeicher, und liest alle
+	 * Datensätze einer .xls-Datei als einzelne Objekte ein. Ohne diese Grenzen könnte eine kleine, stark
+	 * komprimierte Datei (eine "ZIP-Bombe") oder eine Datei mit sehr vielen kleinen Datensätzen den gesamten
+	 * Arbeitsspeicher belegen. Die Grenzen werden geprüft, während POI die Datei liest, die Datei wird also nur
+	 * einmal entpackt.
+	 *
+	 * @param workbook Der Inhalt der Excel-Datei.
+	 * @param limits Die Grenzen, die beim Lesen eingehalten werden müssen.
+	 * @return Die geöffnete Excel-Datei.
+	 * @throws IOException Wenn die Datei nicht gelesen werden kann oder eine Grenze überschritten wird.
+	 * @throws InvalidFormatException Wenn die .xlsx-Datei fehlerhaft ist.
+	 */
+	static Workbook openWorkbook(byte[] workbook, EntryLimits limits) throws IOException, InvalidFormatException {
+		boolean zip = workbook.length >= 4 && workbook[0] == 'P' && workbook[1] == 'K' && workbook[2] == 3 && workbook[3] == 4;
+		if(zip) {
+			try(InputStream in = new RepackingInputStream(new LimitedZipInputStream(workbook, limits))) {
+				return new XSSFWorkbook(OPCPackage.open(in));
+			}
+		}
+
+		NPOIFSFileSystem fs = new NPOIFSFileSystem(new ByteArrayInputStream(workbook));
+		checkRecordCount(fs.getRoot(), limits);
+		return new HSSFWorkbook(fs.getRoot(), true);
+	}
+
+	/**
+	 * Prüft bei .xls-Dateien, dass der Tabellen-Stream nicht zu viele Datensätze enthält. Dafür werden nur
+	 * die Kopfzeilen der Datensätze gelesen.
+	 */
+	private static void checkRecordCount(DirectoryNode root, EntryLimits limits) throws IOException {
+		int records = 0;
+		try(DocumentInputStream in = root.createDocumentInputStream(HSSFWorkbook.getWorkbookDirEntryName(root))) {
+			while(in.available() >= 4) {
+				in.readUShort();
+				int length = in.readUShort();
+				if(in.skip(length) < length) break;
+				if(++records > limits.maxRecords) {
+					throw new LimitExceededException("Datei enthält mehr als " + limits.maxRecords + " Datensätze");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gibt eine .xlsx-Datei als unkomprimiertes ZIP-Archiv an {@link OPCPackage#open(InputStream)} weiter.
+	 *
+	 * POI entpackt die Datei mit einem eigenen ZipInputStream, in dem die Grenzen nicht geprüft werden können
+	 * (erst POI 3.12 bietet dafür {@code ZipSecureFile}). Die Bestandteile werden deshalb hier mit dem
+	 * {@link LimitedZipInputStream} entpackt und ohne Komprimierung neu verpackt, sodass POI sie nur noch
+	 * kopiert. Es wird immer nur der Bestandteil entpackt, den POI als nächstes liest; die Datei wird also
+	 * weiterhin nur einmal entpackt, und zusätzlich zu POI wird höchstens ein Bestandteil gepuffert.
+	 */
+	private static class RepackingInputStream extends InputStream {
+		/** Die neu verpackten Daten, die POI noch nicht gelesen hat. */
+		private static class Pending extends ByteArrayOutputStream {
+			byte[] buffer() {
+				return buf;
+			}
+		}
+
+		private final LimitedZipInputStream source;
+		private final Pending pending = new Pending();
+		private final ZipOutputStream target = new ZipOutputStream(pending);
+		private final Pending part = new Pending();
+		private final byte[] buffer = new byte[64 * 1024];
+		private int position = 0;
+		private boolean finished = false;
+
+		RepackingInputStream(LimitedZipInputStream source) {
+			this.source = source;
+		}
+
+		/**
+		 * Entpackt den nächsten Bestandteil und verpackt ihn ohne Komprimierung (STORED) neu. Dafür müssen Größe
+		 * und Prüfsumme vorher bekannt sein, es wird also immer ein ganzer Bestandteil gepuffert.
+		 *
+		 * @return false, wenn alle Daten gelesen wurden.
+		 */
+		private boolean fill() throws IOException {
+			while(position >= pending.size()) {
+				if(finished) return false;
+				pending.reset();
+				position = 0;
+				ZipEntry entry = source.getNextEntry();
+				if(entry == null) {
+					target.close();
+					finished = true;
+					continue;
+				}
+				part.reset();
+				CRC32 crc = new CRC32();
+				int read;
+				while((read = source.read(buffer, 0, buffer.length)) >= 0) {
+					part.write(buffer, 0, read);
+					crc.update(buffer, 0, read);
+				}
+				ZipEntry stored = new ZipEntry(entry.getName());
+				stored.setMethod(ZipEntry.STORED);
+				stored.setSize(part.size());
+				stored.setCompressedSize(part.size());
+				stored.setCrc(crc.getValue());
+				target.putNextEntry(stored);
+				target.write(part.buffer(), 0, part.size());
+				target.closeEntry();
+			}
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return fill() ? pending.buffer()[position++] & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] data, int offset, int length) throws IOException {
+			if(length == 0) return 0;
+			if(!fill()) return -1;
+			int count = Math.min(length, pending.size() - position);
+			System.arraycopy(pending.buffer(), position, data, offset, count);
+			position += count;
+			return count;
+		}
+
+		@Override
+		public void close() throws IOException {
+			source.close();
+		}
+	}
+
+	/** Ein ZipInputStream, der beim Entpacken die {@link EntryLimits} für .xlsx-Dateien prüft. */
+	private static class LimitedZipInputStream extends ZipInputStream {
+		private final ByteArrayInputStream packed;
+		private final long packedLength;
+		private final EntryLimits limits;
+
+		private String part = null;
+		private long partStart = 0;
+		private long partUnpacked = 0;
+		private long unpacked = 0;
+
+		LimitedZipInputStream(byte[] workbook, EntryLimits limits) {
+			this(new ByteArrayInputStream(workbook), workbook.length, limits);
+		}
+
+		private LimitedZipInputStream(ByteArrayInputStream packed, long packedLength, EntryLimits limits) {
+			super(packed);
+			this.packed = packed;
+			this.packedLength = packedLength;
+			this.limits = limits;
+		}
+
+		/** @return Anzahl der bisher gelesenen gepackten Bytes. */
+		private long packedPosition() {
+			return packedLength - packed.available();
+		}
+
+		@Override
+		public ZipEntry getNextEntry() throws IOException {
+			ZipEntry entry = super.getNextEntry();
+			part = entry == null ? null : entry.getName();
+			partStart = packedPosition();
+			partUnpacked = 0;
+			return entry;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int read = super.read(buffer, offset, length);
+			if(read <= 0) return read;
+			partUnpacked += read;
+			unpacked += read;
+			if(unpacked > limits.maxUnpackedBytes) {
+				throw new LimitExceededException("Entpackte Datei ist größer als " + (limits.maxUnpackedBytes >> 20) + " MB (Bestandteil " + part + ")");
+			}
+			if(partUnpacked > RATIO_GRACE_BYTES && packedPosition() - partStart < partUnpacked * limits.minInflateRatio) {
+				throw new LimitExceededException("Bestandteil " + part + " ist ungewöhnlich stark komprimiert (ZIP-Bombe?)");
+			}
+			return read;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package mintec;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/** Ein Antrag, dessen Inhalt bereits vollständig im Arbeitsspeicher vorliegt. */
+class MemoryInput implements InputSource {
+	private final String name;
+	private final byte[] data;
+
+	MemoryInput(String name, byte[] data) {
+		this.name = name;
+		this.data = data;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public InputStream open() {
+		return new ByteArrayInputStream(data);
+	}
+
+	@Override
+	public long size() {
+		return data.length;
+	}
+
+	@Override
+	public void close() {
+	}
+}
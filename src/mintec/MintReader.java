@@ -1,10 +1,17 @@
 package mintec;
 
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.ss.usermodel.*;
@@ -29,10 +36,268 @@ class MintReader {
    * verwendet werden.
    */
   @SuppressWarnings({"unused", "FieldCanBeLocal"})
-  private final int A = 1, B = 2, C = 3, D = 4, E = 5, F = 6, G = 7, H = 8;
+  private static final int A = 1, B = 2, C = 3, D = 4, E = 5, F = 6, G = 7, H = 8;
 
-  /** Die Excel-Tabelle des Antrags. */
-  private Sheet sheet;
+  /** Anzahl der Spalten (A bis H) und Zeilen des Antragsformulars. */
+  private static final int FORM_COLUMNS = 8, FORM_ROWS = 72;
+
+  /** Die Formularversion, die dieses Programm lesen kann. */
+  private static final String EXPECTED_VERSION = "1.0.0";
+
+  /** Zeilen der Fächer in Abschnitt I für die Variante "Zwei Abiturfächer auf erhöhtem Niveau". */
+  private static final int[] TWO_SUBJECTS_ROWS = {7, 8};
+
+  /** Zeilen der Fächer in Abschnitt I für die Variante "Ein Abiturfach und zwei weitere Fächer". */
+  private static final int[] THREE_SUBJECTS_ROWS = {10, 11, 12};
+
+  /** Maximale Abweichung zwischen gespeichertem und berechnetem Durchschnitt (Rundung im Formular). */
+  private static final double MEAN_TOLERANCE = 0.005;
+
+  /** Erste Zeile der Varianten A bis D in Abschnitt II. */
+  private static final int PROJECT_ROW_A = 15, PROJECT_ROW_B = 17, PROJECT_ROW_C = 20, PROJECT_ROW_D = 23;
+
+  /**
+   * Die Prüfungen, die beim Einlesen eines Antrags durchgeführt werden.
+   *
+   * Jede Prüfung kann einzeln abgeschaltet werden (siehe {@link Rules}), z.B. um bei einer Vorabprüfung
+   * vieler Anträge nur bestimmte Fehler zu suchen ({@link Preflight}). Eine abgeschaltete Prüfung wird nicht
+   * ausgewertet und erzeugt keine Probleme.
+   */
+  enum Rule {
+    /** Die Formularversion in Zelle A3 muss der erwarteten Version entsprechen. */
+    VERSION,
+    /** Name und Geburtsdatum müssen angegeben sein. */
+    PERSON,
+    /** Genau eine der beiden Varianten in Abschnitt I muss vollständig ausgefüllt sein. */
+    SUBJECT_VARIANT,
+    /** Die Stufe in Abschnitt I muss zum Notendurchschnitt passen. */
+    SUBJECTS_LEVEL,
+    /** Die Stufe des Jugend forscht-Wettbewerbs darf höchstens 3 sein. */
+    PROJECT_LEVEL,
+    /** Die Angaben zur gewählten fachwissenschaftlichen Arbeit müssen vollständig sein. */
+    PROJECT_INPUT,
+    /** Zellen, die eine Zahl enthalten sollen, dürfen keinen anderen Text enthalten. */
+    NUMBER_FORMAT,
+    /**
+     * Die Ergebnisse der Formeln (Durchschnitt und Stufen) müssen in der Datei gespeichert sein, und der
+     * gespeicherte Durchschnitt muss zu den Noten passen.
+     */
+    STORED_VALUES
+  }
+
+  /**
+   * Eine Prüfung einer einzelnen Zelle des Formulars.
+   *
+   * Die Prüfung liest nur ihre eigene Zelle aus den {@link FormCells} und die beim Einlesen bereits
+   * bestimmten Werte (z.B. die gewählte Variante eines Abschnitts). Ein festgestelltes Problem wird dieser
+   * Zelle zugeordnet.
+   */
+  private abstract static class Check {
+    final Rule rule;
+    final int column;
+    final int row;
+    final boolean fatal;
+
+    Check(Rule rule, int column, int row, boolean fatal) {
+      this.rule = rule;
+      this.column = column;
+      this.row = row;
+      this.fatal = fatal;
+    }
+
+    /**
+     * @param form Der eingelesene Antrag.
+     * @return Die Beschreibung des Problems, oder null wenn die Zelle in Ordnung ist.
+     */
+    abstract String test(MintReader form);
+  }
+
+  /**
+   * Alle Prüfungen des Formulars (außer der Formularversion, die vor dem Einlesen geprüft wird).
+   *
+   * Neue Prüfungen werden hier eingetragen und benötigen keinen weiteren Zugriff auf die Excel-Tabelle.
+   */
+  private static final Check[] CHECKS = {
+    new Check(Rule.PERSON, C, 1, true) {
+      String test(MintReader form) {
+        return form.name.isEmpty() ? "fehlender Name" : null;
+      }
+    },
+    new Check(Rule.PERSON, C, 2, true) {
+      String test(MintReader form) {
+        switch(form.cells.kind(column, row)) {
+          case BLANK: return "Geburtsdatum fehlt";
+          case NUMBER: return null;
+          default: return "fehlerhafte Datumsangabe: " + form.stringCellAt(column, row);
+        }
+      }
+    },
+
+    // Abschnitt I - Fachliche Kompetenz
+    new Check(Rule.SUBJECT_VARIANT, A, 4, true) {
+      String test(MintReader form) {
+        return form.subjectRows != null ? null
+          : "Weder zwei Abiturfächer auf erhöhtem Niveau noch ein Abiturfach auf erhöhtem Niveau und zwei weitere Fächer vollständig ausgefüllt.";
+      }
+    },
+    new Check(Rule.SUBJECT_VARIANT, B, TWO_SUBJECTS_ROWS[0], false) {
+      String test(MintReader form) {
+        return form.ignoredSubjectRows != TWO_SUBJECTS_ROWS ? null
+          : "Ignoriere überflüssige Daten für Variante „Zwei Abiturfächer auf erhöhtem Niveau”";
+      }
+    },
+    new Check(Rule.SUBJECT_VARIANT, B, THREE_SUBJECTS_ROWS[0], false) {
+      String test(MintReader form) {
+        return form.ignoredSubjectRows != THREE_SUBJECTS_ROWS ? null
+          : "Ignoriere überflüssige Daten für Variante „Ein Abiturfach und zwei weitere Fächer”";
+      }
+    },
+    grade(TWO_SUBJECTS_ROWS, 7), grade(TWO_SUBJECTS_ROWS, 8),
+    grade(THREE_SUBJECTS_ROWS, 10), grade(THREE_SUBJECTS_ROWS, 11), grade(THREE_SUBJECTS_ROWS, 12),
+    number(E, 7),
+    new Check(Rule.STORED_VALUES, E, 7, false) {
+      String test(MintReader form) {
+        DecimalFormat format = new DecimalFormat("0.##", DecimalFormatSymbols.getInstance(Locale.GERMAN));
+        if(form.resultMissing(column, row)) {
+          return form.computedMean == 0 ? null
+            : "Ergebnis der Formel fehlt (Formeln nicht berechnet?), verwende berechneten Wert " + format.format(form.computedMean);
+        }
+        return form.subjectRows == null || Math.abs(form.subjectsMean - form.computedMean) <= MEAN_TOLERANCE ? null
+          : "Gespeicherter Durchschnitt " + format.format(form.subjectsMean) + " weicht vom Durchschnitt der Noten "
+            + format.format(form.computedMean) + " ab (Formeln nicht neu berechnet?)";
+      }
+    },
+    number(H, 6),
+    new Check(Rule.SUBJECTS_LEVEL, H, 6, true) {
+      String test(MintReader form) {
+        // Fehlt das Ergebnis der Formel, gibt es nichts zu vergleichen; die Stufe wird aus dem Durchschnitt bestimmt.
+        if(form.cells.kind(column, row) == FormCells.Kind.MISSING_RESULT) return null;
+        return form.intCellAt(column, row) == form.subjectsLevel ? null
+          : "Stufe stimmt nicht mit berechneter Stufe überein (wurde die Exceldatei manipuliert?)";
+      }
+    },
+
+    // Abschnitt II - Fachwissenschaftliches Arbeiten
+    number(D, PROJECT_ROW_A), number(E, PROJECT_ROW_A), level(PROJECT_ROW_A), input(PROJECT_ROW_A, PROJECT_ROW_A),
+    number(D, PROJECT_ROW_B), number(E, PROJECT_ROW_B), level(PROJECT_ROW_B), input(PROJECT_ROW_B, PROJECT_ROW_B),
+    input(PROJECT_ROW_B, PROJECT_ROW_B + 1),
+    number(D, PROJECT_ROW_C), number(E, PROJECT_ROW_C), level(PROJECT_ROW_C), input(PROJECT_ROW_C, PROJECT_ROW_C),
+    input(PROJECT_ROW_C, PROJECT_ROW_C + 1),
+    number(E, PROJECT_ROW_D), input(PROJECT_ROW_D, PROJECT_ROW_D), input(PROJECT_ROW_D, PROJECT_ROW_D + 1),
+    input(PROJECT_ROW_D, PROJECT_ROW_D + 2),
+    new Check(Rule.PROJECT_LEVEL, E, PROJECT_ROW_D, true) {
+      String test(MintReader form) {
+        return form.intCellAt(column, row) > 3 ? "Stufe des Jugend forscht-Wettbewerbs größer als 3" : null;
+      }
+    },
+
+    // Abschnitt III - Zusätzliche MINT-Aktivitäten
+    number(H, 72),
+    new Check(Rule.STORED_VALUES, H, 72, true) {
+      String test(MintReader form) {
+        return !form.resultMissing(column, row) || form.activities1.size() + form.activities2.size() == 0 ? null
+          : "Ergebnis der Formel fehlt (Formeln nicht berechnet?), die Stufe kann nicht bestimmt werden";
+      }
+    }
+  };
+
+  /** Eine Zelle, die eine Zahl enthalten muss (oder leer ist). */
+  private static Check number(int column, int row) {
+    return new Check(Rule.NUMBER_FORMAT, column, row, true) {
+      String test(MintReader form) {
+        return form.numberCell(column, row) ? null : "Zahl erwartet";
+      }
+    };
+  }
+
+  /** Eine Note in Abschnitt I, die nur geprüft wird, wenn die Variante mit diesen Zeilen gewählt wurde. */
+  private static Check grade(final int[] variantRows, int row) {
+    return new Check(Rule.NUMBER_FORMAT, D, row, true) {
+      String test(MintReader form) {
+        return form.subjectRows != variantRows || form.numberCell(column, row) ? null : "Zahl erwartet";
+      }
+    };
+  }
+
+  /** Eine Eingabe in Abschnitt II, die nur für die gewählte Variante (erste Zeile variantRow) nötig ist. */
+  private static Check input(final int variantRow, int row) {
+    return new Check(Rule.PROJECT_INPUT, B, row, true) {
+      String test(MintReader form) {
+        return form.projectRow != variantRow || !form.stringCellAt(column, row).isEmpty() ? null : "Fehlende Eingabe";
+      }
+    };
+  }
+
+  /**
+   * Die von Excel berechnete Stufe einer fachwissenschaftlichen Arbeit der Varianten A bis C. Die Formel ist hier
+   * nicht bekannt (siehe {@link LevelCalculator}), eine fehlende Stufe ist deshalb ein Fehler, sobald eine Note
+   * angegeben ist.
+   */
+  private static Check level(int row) {
+    return new Check(Rule.STORED_VALUES, E, row, true) {
+      String test(MintReader form) {
+        return !form.resultMissing(column, row) || form.cellEmpty(D, row) ? null
+          : "Ergebnis der Formel fehlt (Formeln nicht berechnet?), die Stufe kann nicht bestimmt werden";
+      }
+    };
+  }
+
+  /**
+   * Eine Auswahl eingeschalteter Prüfungen.
+   *
+   * Die Prüfungen werden einmal aus {@link #CHECKS} zusammengestellt und nach Zellen sortiert. Für jeden Antrag
+   * werden sie dann in einem einzigen Durchlauf über die Zellen des Formulars ausgewertet. Dieselbe Auswahl kann
+   * für beliebig viele Anträge (auch gleichzeitig) verwendet werden.
+   */
+  static final class Rules {
+    /** Alle Prüfungen, wie sie bei der Erstellung der Zertifikate durchgeführt werden. */
+    static final Rules ALL = new Rules(EnumSet.allOf(Rule.class));
+
+    private final Set<Rule> enabled;
+    private final Check[] checks;
+
+    /** @param enabled Die Prüfungen, die durchgeführt werden sollen. */
+    Rules(Set<Rule> enabled) {
+      this.enabled = EnumSet.copyOf(enabled);
+      List<Check> selected = new ArrayList<>();
+      for(Check check : CHECKS) {
+        if(this.enabled.contains(check.rule)) selected.add(check);
+      }
+      this.checks = selected.toArray(new Check[selected.size()]);
+      Arrays.sort(this.checks, new Comparator<Check>() {
+        @Override
+        public int compare(Check a, Check b) {
+          return Integer.compare(cellIndex(a.column, a.row), cellIndex(b.column, b.row));
+        }
+      });
+    }
+
+    boolean contains(Rule rule) {
+      return enabled.contains(rule);
+    }
+
+    private void check(MintReader form) {
+      for(Check check : checks) {
+        String text = check.test(form);
+        if(text != null) form.problems.add(new Problem(check.row, check.column, text, check.fatal));
+      }
+    }
+  }
+
+  /** Die Zellen des Antragsformulars, siehe {@link FormCells}. */
+  private FormCells cells;
+
+  /** Die Zeilen der gewählten Variante in Abschnitt I, oder null wenn keine vollständig ausgefüllt ist. */
+  private int[] subjectRows;
+
+  /** Die Zeilen der nicht gewählten, aber teilweise ausgefüllten Variante in Abschnitt I, sonst null. */
+  private int[] ignoredSubjectRows;
+
+  /** Die erste Zeile der gewählten Variante in Abschnitt II, oder 0 wenn keine gewählt wurde. */
+  private int projectRow;
+
+  /** Der aus den Noten der gewählten Variante berechnete Durchschnitt in Abschnitt I, sonst 0. */
+  private double computedMean;
 
   /**
    * Eine Liste von Problemen (Fehler oder Warnung), die während des Einlesens festgestellt wurden.
@@ -149,7 +414,7 @@ class MintReader {
 
   /** Klasse für festgestellte Probleme (entweder Warnung oder Fehler) beim Einlesen. */
   @AllArgsConstructor
-  class Problem {
+  static class Problem {
     /** Die Zeile der Zelle, deren Wert fehlerhaft ist und somit das Problem verursacht. */
     public final int row;
 
@@ -190,45 +455,55 @@ class MintReader {
    * Dieser Konstruktor liest die Daten aus einem MINT-Zertifikat Antrag und setzt die
    * entsprechenden Membervariablen.
    *
-   * @param file InputStream für die Excel-Datei, die die Daten dieses Antrags enthält.
+   * @param file InputStream für die Excel-Datei, die die Daten dieses Antrags enthält (z.B. eine
+   *             Datei oder ein Eintrag aus einem ZIP-Archiv).
    * @throws IOException Wenn das Lesen aus der Datei fehlschlägt.
    * @throws InvalidFormatException Wenn eine Zelle ein ungültiges Format hat.
    */
-  MintReader(FileInputStream file) throws InvalidFormatException, IOException {
-    sheet = WorkbookFactory.create(file).getSheetAt(0);
+  MintReader(InputStream file) throws InvalidFormatException, IOException {
+    this(WorkbookFactory.create(file), Rules.ALL);
+  }
+
+  /**
+   * Liest die Daten aus einer bereits geöffneten Excel-Datei, z.B. wenn das Öffnen getrennt gemessen werden
+   * soll (siehe {@link PipelineEvents}).
+   *
+   * @param workbook Die Excel-Datei des Antrags.
+   */
+  MintReader(Workbook workbook) {
+    this(workbook, Rules.ALL);
+  }
+
+  /**
+   * Liest die Daten aus einer bereits geöffneten Excel-Datei und führt nur die ausgewählten Prüfungen durch
+   * (siehe {@link Preflight}).
+   *
+   * Zuerst werden alle Daten eingelesen, danach werden die Prüfungen in einem Durchlauf ausgewertet.
+   *
+   * @param workbook Die Excel-Datei des Antrags.
+   * @param rules Die Prüfungen, die durchgeführt werden sollen.
+   */
+  MintReader(Workbook workbook, Rules rules) {
+    cells = new FormCells(workbook.getSheetAt(0), FORM_COLUMNS, FORM_ROWS);
     problems = new ArrayList<>();
 
     // Es gibt mehrere Versionen des Formulars, die inkompatibel sind. Um sicher zu gehen, dass
     // wir keine alte Version bekommen, wird hier überprüft, dass die Formularversion diejenige ist,
-    // die wir erwarten.
-    {
-      final String expectedVersion = "1.0.0";
-      final String readVersion = stringCellAt(A,3);
-      if(!expectedVersion.equals(readVersion)) {
-        problems.add(new Problem(A, 3, "Inkompatible Formularversion: " + "Version ist " + readVersion + ", erwarte " + expectedVersion, true));
-        return;
-      }
+    // die wir erwarten. Bei einer anderen Version haben die übrigen Zellen eine andere Bedeutung,
+    // deshalb wird diese Prüfung vor allen anderen durchgeführt.
+    final String readVersion = stringCellAt(A,3);
+    if(rules.contains(Rule.VERSION) && !EXPECTED_VERSION.equals(readVersion)) {
+      problems.add(new Problem(3, A, "Inkompatible Formularversion: " + "Version ist " + readVersion + ", erwarte " + EXPECTED_VERSION, true));
+      return;
     }
 
     // Einlesen der Daten zum Antragssteller (Name, Geburtsdatum)
-    {
-      final int personColumn = C;
-      final int nameRow = 1;
-      final int dateRow = 2;
-
-      name = stringCellAt(personColumn, nameRow);
-      if (name.equals("")) {
-        problems.add(new Problem(nameRow, personColumn, "fehlender Name", true));
-      }
-      try {
-        date = cellAt(personColumn, dateRow).getDateCellValue();
-        if (date == null)
-          problems.add(new Problem(dateRow, personColumn, "Geburtsdatum fehlt", true));
-      } catch (Exception e) {
-          String dateString = stringCellAt(personColumn, dateRow);
-          problems.add(new Problem(dateRow, personColumn,
-                           "fehlerhafte Datumsangabe: " + dateString, true));
-      }
+    name = stringCellAt(C, 1);
+    try {
+      date = cells.date(C, 2);
+    } catch (IllegalStateException e) {
+      // Wird von der Prüfung des Geburtsdatums gemeldet
+      date = null;
     }
 
     // Einlesen der Daten aus den verschiedenen Abschnitten
@@ -239,6 +514,8 @@ class MintReader {
     extractSubjects(textColumn, gradeColumn);
     extractProjects(textColumn, gradeColumn);
     extractActivities(textColumn, levelColumn);
+
+    rules.check(this);
   }
 
   /** Diese Methode liest die Daten aus dem Abschnitt I - Fachliche Kompetenz ein.
@@ -257,11 +534,9 @@ class MintReader {
     // Die erste Variante ist im folgenden Code mit "twoSubjects" bezeichnet (da zwei Fächer
     // benötigt werden), die zweite mit "threeSubjects".
 
-    // Zeilen für die Fächer bei Variante 1
-    final int[] twoSubjectsRows = {7, 8};
-
-    // Zeilen für die Fächer bei Variante 2
-    final int[] threeSubjectsRows = {10,11,12};
+    // Zeilen für die Fächer bei Variante 1 und 2
+    final int[] twoSubjectsRows = TWO_SUBJECTS_ROWS;
+    final int[] threeSubjectsRows = THREE_SUBJECTS_ROWS;
 
     // Wir müssen entscheiden, welche der beiden Varianten für Abschnitt I ausgefüllt ist bzw.
     // welche verwendet werden soll. Damit das Programm in möglichst vielen Fällen funktioniert,
@@ -291,44 +566,29 @@ class MintReader {
     }
 
     // Danach können wir uns für eine der beiden Varianten entscheiden.
+    // Ist keine Variante vollständig ausgefüllt, bleibt subjectRows null (siehe Rule.SUBJECT_VARIANT).
     subjects = new ArrayList<>();
     if(twoSubjectsFilledFields == 4) {
-      for(int row : twoSubjectsRows) subjects.add(stringCellAt(textColumn, row));
-      if(threeSubjectsFilledFields > 0) {
-        problems.add(new Problem(
-          threeSubjectsRows[0],
-          textColumn,
-          "Ignoriere überflüssige Daten für Variante „Ein Abiturfach und zwei weitere Fächer”",
-          false
-        ));
-      }
+      subjectRows = twoSubjectsRows;
+      if(threeSubjectsFilledFields > 0) ignoredSubjectRows = threeSubjectsRows;
     } else if(threeSubjectsFilledFields == 6) {
-      for(int row : threeSubjectsRows) subjects.add(stringCellAt(textColumn, row));
-      if (twoSubjectsFilledFields > 0)
-        problems.add(new Problem(
-          twoSubjectsRows[0],
-          textColumn,
-          "Ignoriere überflüssige Daten für Variante „Zwei Abiturfächer auf erhöhtem Niveau”",
-          false
-        ));
-    } else {
-      problems.add(new Problem(A, 4,
-        "Weder zwei Abiturfächer auf erhöhtem Niveau noch ein Abiturfach auf erhöhtem Niveau und zwei weitere Fächer vollständig ausgefüllt.",
-        true
-      ));
+      subjectRows = threeSubjectsRows;
+      if(twoSubjectsFilledFields > 0) ignoredSubjectRows = twoSubjectsRows;
+    }
+    if(subjectRows != null) {
+      for(int row : subjectRows) subjects.add(stringCellAt(textColumn, row));
     }
 
-    subjectsMean = cellAt(meanColumn, meanRow).getNumericCellValue();
-    if(subjectsMean >= 13) subjectsLevel = 3;
-    else if(subjectsMean >= 11) subjectsLevel = 2;
-    else if(subjectsMean >= 9) subjectsLevel = 1;
-
-    if(intCellAt(H, 6) != subjectsLevel) {
-      problems.add(new Problem(H, 6,
-        "Stufe stimmt nicht mit berechneter Stufe überein (wurde die Exceldatei manipuliert?)",
-        true
-      ));
+    // Es wird der von Excel gespeicherte Durchschnitt verwendet. Nur wenn die Formel beim Speichern
+    // nicht ausgewertet wurde, wird der Durchschnitt aus den Noten der gewählten Variante berechnet.
+    // Weicht der gespeicherte Durchschnitt ab, wird das von Rule.STORED_VALUES gemeldet.
+    if(subjectRows != null) {
+      double[] grades = new double[subjectRows.length];
+      for(int i = 0; i < subjectRows.length; ++i) grades[i] = doubleCellAt(gradeColumn, subjectRows[i]);
+      computedMean = LevelCalculator.mean(grades);
     }
+    subjectsMean = resultMissing(meanColumn, meanRow) ? computedMean : doubleCellAt(meanColumn, meanRow);
+    subjectsLevel = LevelCalculator.meanLevel(subjectsMean);
   }
 
   /** Liest die Daten aus Abschnitt II - Fachwissenschaftliches Arbeiten aus
@@ -348,25 +608,24 @@ class MintReader {
     // - Jugend forscht-Wettbewerb / vergleichbarer Wettbewerb (D)
 
     // Diese Variablen kennzeichen die erste Zeile, die Daten der jeweiligen Variante enthält.
-    final int rowA = 15;
-    final int rowB = 17;
-    final int rowC = 20;
-    final int rowD = 23;
+    final int rowA = PROJECT_ROW_A;
+    final int rowB = PROJECT_ROW_B;
+    final int rowC = PROJECT_ROW_C;
+    final int rowD = PROJECT_ROW_D;
 
-    // Als nächstes werden die von der Excel-Tabelle berechneten Stufen für die einzelnen
-    // Varianten ausgelesen. Das ist notwendig, um die richtige Variante für das Zertifikat
-    // auszuwählen: wenn mehrere Varianten ausgefüllt sind, dann bevorzugen wir diejenige, die
-    // die höchste Stufe hat.
+    // Als nächstes werden die Stufen für die einzelnen Varianten bestimmt. Das ist notwendig, um
+    // die richtige Variante für das Zertifikat auszuwählen: wenn mehrere Varianten ausgefüllt sind,
+    // dann bevorzugen wir diejenige, die die höchste Stufe hat. Die Stufen der Varianten A bis C
+    // werden vom Formular aus der Note berechnet (fehlt das Ergebnis, meldet Rule.STORED_VALUES einen
+    // Fehler), die Stufe von Variante D wird im Formular direkt eingegeben.
 
     final int levelA = intCellAt(subLevelColumn, rowA);
     final int levelB = intCellAt(subLevelColumn, rowB);
     final int levelC = intCellAt(subLevelColumn, rowC);
     int levelD = intCellAt(subLevelColumn, rowD);
 
-    if(levelD > 3) {
-      problems.add(new Problem(rowD, subLevelColumn, "Stufe des Jugend forscht-Wettbewerbs größer als 3", true));
-      return;
-    }
+    // Eine ungültige Stufe wird von Rule.PROJECT_LEVEL gemeldet, es wird dann keine Variante gewählt.
+    if(levelD > 3) return;
 
     // Die in diesem Abschnitt erreichte Stufe ist das Maximum aller in den einzelnen Varianten
     // erreichten Stufen, da wir nur die beste Variante werten.
@@ -392,24 +651,17 @@ class MintReader {
       throw new AssertionError("this should be impossible");
     }
 
-    if(stringCellAt(textColumn, nameRow).isEmpty()) {
-      problems.add(new Problem(nameRow, textColumn, "Fehlende Eingabe", true));
-    }
+    // Fehlende Eingaben der gewählten Variante werden von Rule.PROJECT_INPUT gemeldet.
+    projectRow = nameRow;
     projectString += stringCellAt(textColumn, nameRow);
 
     // Alle Varianten außer A haben nach der Name-Zeile eine Zeile mit dem Thema der Arbeit
     if(nameRow != rowA) {
-      if(stringCellAt(textColumn, nameRow + 1).isEmpty()) {
-        problems.add(new Problem(nameRow + 1, textColumn, "Fehlende Eingabe", true));
-      }
       projectString += "\n\n" + "Thema:\n" + stringCellAt(textColumn, nameRow + 1);
     }
 
     // Bei Jugend forscht gibt es eine "Ergebnis" Zelle, die statt der Note verwendet wird
     if(nameRow == rowD) {
-      if(stringCellAt(textColumn, nameRow + 2).isEmpty()) {
-        problems.add(new Problem(nameRow + 2, textColumn, "Fehlende Eingabe", true));
-      }
       projectString += "\n\n" + stringCellAt(textColumn, nameRow + 2);
     } else
       projectString += "\n\n" + "Note: " + Integer.toString(intCellAt(gradeColumn, nameRow));
@@ -433,8 +685,6 @@ class MintReader {
     // Letzte Zeile dieses Abschnitts, enthält Stufe des Abschnitts
     final int extraRow = 72;
 
-    activityLevel = intCellAt(levelColumn, extraRow);
-
     activities1 = new ArrayList<>();
     activities2 = new ArrayList<>();
 
@@ -447,37 +697,42 @@ class MintReader {
       String activity = stringCellAt(textColumn, row).trim();
       if(!activity.equals("")) activities2.add(activity);
     }
+
+    // Fehlt das Ergebnis der Formel, meldet Rule.STORED_VALUES einen Fehler.
+    activityLevel = intCellAt(levelColumn, extraRow);
   }
 
   /**
-   * Findet die Zelle mit gegebener Spalte und Zeile.
+   * Überprüft, ob das Ergebnis einer Formel fehlt: Die Zelle ist leer, oder die Formel wurde beim Speichern
+   * nicht ausgewertet (siehe {@link FormCells.Kind#MISSING_RESULT}).
    *
-   * Für die Indices der Spalten A bis H sind in dieser Klasse Konstanten definiert,
-   * sodass z.B. cellAt(A,1) geschrieben werden kann um die Zelle A1 zu bekommen.
-   *
-   * @param column Index der Spalte (1-basiert, 1 ist die erste Spalte).
-   * @param row Index der Zeile (1-basiert, 1 ist die erste Zeile)
-   * @return Das Cell-Objekt für diese Zelle.
+   * @param column Spalte der Zelle mit dem Ergebnis der Formel.
+   * @param row Zeile der Zelle mit dem Ergebnis der Formel.
+   * @return true wenn kein Ergebnis gespeichert ist, sonst false.
    */
-  private Cell cellAt(int column, int row) {
-    return sheet.getRow(row - 1).getCell(column - 1);
+  private boolean resultMissing(int column, int row) {
+    FormCells.Kind kind = cells.kind(column, row);
+    return kind == FormCells.Kind.BLANK || kind == FormCells.Kind.MISSING_RESULT;
+  }
+
+  /** Eine fortlaufende Nummer der Zelle in der Reihenfolge der Zeilen und Spalten des Formulars. */
+  private static int cellIndex(int column, int row) {
+    return (row - 1) * FORM_COLUMNS + (column - 1);
   }
 
   /**
    * Überprüft, ob eine bestimmte Zelle leer ist (nur Leerzeichen enthält).
    *
-   * @param column Index der Spalte (1-basiert, 1 ist die erste Spalte). Siehe {@link #cellAt}.
-   * @param row Index der Zeile (1-basiert, 1 ist die erste Zeile). Siehe {@link #cellAt}.
+   * Für die Indices der Spalten A bis H sind in dieser Klasse Konstanten definiert,
+   * sodass z.B. cellEmpty(A,1) geschrieben werden kann um die Zelle A1 zu prüfen.
+   *
+   * @param column Index der Spalte (1-basiert, 1 ist die erste Spalte).
+   * @param row Index der Zeile (1-basiert, 1 ist die erste Zeile).
    * @return true wenn die Zelle leer ist, sonst false.
    */
   @SuppressWarnings("BooleanMethodIsAlwaysInverted")
   private boolean cellEmpty(int column, int row) {
-    Cell cell = cellAt(column, row);
-    if(cell != null && cell.getCellType() == Cell.CELL_TYPE_STRING) {
-      String value = cell.getStringCellValue();
-      if(value.trim().isEmpty()) return true;
-    }
-    return cell == null || cell.getCellType() == Cell.CELL_TYPE_BLANK;
+    return cells.kind(column, row) == FormCells.Kind.BLANK;
   }
 
   /**
@@ -486,17 +741,18 @@ class MintReader {
    * Die Funktion versucht, Fehler möglichst automatisch zu beheben. Falls die Zelle bspw. eine
    * Zahl enthält, wird kein Fehler generiert, sondern die Zahl als Text zurückgegeben.
    *
-   * @param column Index der Spalte (1-basiert, 1 ist die erste Spalte). Siehe {@link #cellAt}.
-   * @param row Index der Zeile (1-basiert, 1 ist die erste Zeile). Siehe {@link #cellAt}.
+   * @param column Index der Spalte (1-basiert, 1 ist die erste Spalte). Siehe {@link #cellEmpty}.
+   * @param row Index der Zeile (1-basiert, 1 ist die erste Zeile). Siehe {@link #cellEmpty}.
    * @return Text-Repräsentation des Inhalts einer Zelle.
    */
   private String stringCellAt(int column, int row) {
-    Cell cell = cellAt(column, row);
-    if (cell.getCellType() == Cell.CELL_TYPE_STRING) return cell.getStringCellValue().trim();
-    else {
-      int number = intCellAt(column, row);
-      if (number == 0) return "";
-      else return Integer.toString(number);
+    switch(cells.kind(column, row)) {
+      case TEXT: return cells.text(column, row);
+      case BLANK: return "";
+      default:
+        int number = intCellAt(column, row);
+        if (number == 0) return "";
+        else return Integer.toString(number);
     }
   }
 
@@ -507,22 +763,57 @@ class MintReader {
    * Text-Zelle ist, wird versucht, den Inhalt der Text-Zelle als Zahl zu interpretieren. Dazu
    * versteht die Funktion sowohl . als auch , für Zahlen mit Nachkommastellen.
    *
-   * @param column Index der Spalte (1-basiert, 1 ist die erste Spalte). Siehe {@link #cellAt}.
-   * @param row Index der Zeile (1-basiert, 1 ist die erste Zeile). Siehe {@link #cellAt}.
+   * @param column Index der Spalte (1-basiert, 1 ist die erste Spalte). Siehe {@link #cellEmpty}.
+   * @param row Index der Zeile (1-basiert, 1 ist die erste Zeile). Siehe {@link #cellEmpty}.
    * @return Den Inhalt der Zelle als Zahl, auf ganze Zahlen gerundet.
    */
   private int intCellAt(int column, int row) {
-    Cell cell = cellAt(column, row);
-    if (cell.getCellType() == Cell.CELL_TYPE_STRING) {
-      try {
-        String number = cell.getStringCellValue().trim().replace(',', '.');
-        if(number.isEmpty()) return 0;
-        return (int) Math.round(Double.parseDouble(number));
-      } catch (NumberFormatException e) {
-        problems.add(new Problem(row, column, "Zahl erwartet", true));
+    return (int) Math.round(doubleCellAt(column, row));
+  }
+
+  /**
+   * Liest den Inhalt einer Zelle als Zahl mit Nachkommastellen. Siehe {@link #intCellAt}.
+   *
+   * @param column Index der Spalte (1-basiert, 1 ist die erste Spalte). Siehe {@link #cellEmpty}.
+   * @param row Index der Zeile (1-basiert, 1 ist die erste Zeile). Siehe {@link #cellEmpty}.
+   * @return Den Inhalt der Zelle als Zahl, oder 0 wenn die Zelle keine Zahl enthält (wird von
+   *         {@link Rule#NUMBER_FORMAT} gemeldet).
+   */
+  private double doubleCellAt(int column, int row) {
+    switch(cells.kind(column, row)) {
+      case NUMBER: return cells.number(column, row);
+      case TEXT:
+        try {
+          return Double.parseDouble(cells.text(column, row).replace(',', '.'));
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      default:
         return 0;
-      }
     }
-    return (int) Math.round(cell.getNumericCellValue());
+  }
+
+  /**
+   * Überprüft, ob eine Zelle als Zahl gelesen werden kann (siehe {@link #doubleCellAt}).
+   *
+   * @return true wenn die Zelle leer ist, eine Zahl, einen Text mit einer Zahl oder eine Formel ohne Ergebnis
+   *         enthält, sonst false.
+   */
+  private boolean numberCell(int column, int row) {
+    switch(cells.kind(column, row)) {
+      case BLANK:
+      case NUMBER:
+      case MISSING_RESULT:
+        return true;
+      case TEXT:
+        try {
+          Double.parseDouble(cells.text(column, row).replace(',', '.'));
+          return true;
+        } catch (NumberFormatException e) {
+          return false;
+        }
+      default:
+        return false;
+    }
   }
 }
@@ -2,18 +2,20 @@ package mintec;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.InputStream;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 
 import com.itextpdf.text.DocumentException;
 import com.itextpdf.text.pdf.AcroFields;
 import com.itextpdf.text.pdf.PdfReader;
 import com.itextpdf.text.pdf.PdfStamper;
+import com.itextpdf.text.pdf.TextField;
 
 import java.text.DecimalFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * Diese Klasse ist dafür verantwortlich, aus den von {@link MintReader} eingelesenen Daten ein MINTEC-Zertifikat zu
@@ -21,6 +23,10 @@ import java.util.Locale;
  *
  * Dazu wird eine PDF-Vorlage, welche vom MINT-EC Verein zur Verfügung gestellt wird, verwendet. Diese PDF-Datei besitzt
  * bereits fertige Formularfelder, die bestimmte Textbereiche des Zertifikats kennzeichnen.
+ *
+ * In der Druckversion werden die Darstellungen (Appearances) der Formularfelder direkt beim Erzeugen mit den Schriften
+ * der Vorlage generiert und das Formular anschließend reduziert (flattening). Die Zertifikate enthalten dann keine
+ * Formularfelder mehr, sodass PDF-Betrachter und Drucker die Felder nicht für jede Seite erneut berechnen müssen.
  */
 class MintWriter {
     /** Die Vorlage als PDF-Dokument. */
@@ -39,27 +45,39 @@ class MintWriter {
      */
     private AcroFields fields;
 
+    /** Legt fest, ob das Formular beim Abschluss reduziert (flattened) wird (Druckversion). */
+    private final boolean flatten;
+
+    /** Die Größe aller in die Formularfelder geschriebenen Texte in Bytes (UTF-8), siehe {@link #getFilledBytes}. */
+    private long filledBytes = 0;
+
     /**
      * Erstellt ein neues MINT-EC Zertifikat, in dem die Daten aus einem {@link MintReader} in ein PDF-Formular
      * übertragen werden.
      *
      * @param reader Der MintReader, aus welchem die Daten gelesen werden.
-     * @param template Die Vorlage für das PDF-Formular.
+     * @param school Die Schule, deren Bezeichnung auf dem Zertifikat erscheint.
+     * @param template Die Vorlage für das PDF-Formular. Die Vorlage wird verändert und kann deshalb nur für
+     *                 ein einziges Zertifikat verwendet werden, siehe {@link TemplateCache}.
      * @param result OutputStream, in den das Ergebnis geschrieben werden soll.
+     * @param fieldCache Zwischenspeicher für die Formularfelder der Vorlage für die Druckversion, siehe
+     *                   {@link TemplateCache#borrowFields}, oder null wenn die Formularfelder erhalten bleiben sollen.
      * @throws IOException Wenn Fehler beim Schreiben auftreten.
      * @throws DocumentException Wenn Fehler beim Schreiben oder Lesen des PDF-Dokuments auftreten.
      */
-	MintWriter(MintReader reader, InputStream template, OutputStream result) throws IOException, DocumentException {
-        // Lese die Vorlage und initialisiere darauf aufbauend den Stamper, der für die Generierung des Zertifikats
+	MintWriter(MintReader reader, School school, PdfReader template, OutputStream result, Map<String, TextField> fieldCache) throws IOException, DocumentException {
+        // Initialisiere auf Grundlage der Vorlage den Stamper, der für die Generierung des Zertifikats
         // verantwortlich ist.
-		doc = new PdfReader(template);
+		doc = template;
         stamper = new PdfStamper(doc, result);
 		fields = stamper.getAcroFields();
-		fields.setGenerateAppearances(false);
+		flatten = fieldCache != null;
+		fields.setGenerateAppearances(flatten);
+		if(flatten) fields.setFieldCache(fieldCache);
 
         // Schreibe die Daten in das PDF-Dokument
 		setField("Vor- und Nachname", reader.getName());
-        setField("Schulbezeichnung", "am Martin-Andersen-Nexö Gymnasium Dresden");
+        setField("Schulbezeichnung", school.designation);
 
         Date d = reader.getDate();
 		String dateString = d != null ? new SimpleDateFormat("dd. MMMM yyyy", Locale.GERMAN).format(d) : "N/A";
@@ -120,11 +138,20 @@ class MintWriter {
      * @throws DocumentException Wenn PDF-Fehler auftreten.
      */
 	void close() throws IOException, DocumentException {
-		stamper.setFormFlattening(false);
+		stamper.setFormFlattening(flatten);
 		stamper.close();
 		doc.close();
 	}
 
+    /**
+     * Die Menge der Daten, die beim Füllen des Formulars geschrieben wurden, z.B. für {@link PipelineEvents}.
+     *
+     * @return Die Größe aller in die Formularfelder geschriebenen Texte in Bytes (UTF-8).
+     */
+	long getFilledBytes() {
+		return filledBytes;
+	}
+
     /**
      * Setzt ein PDF-Formularfeld in der Vorlage auf einen bestimmte Wert.
      *
@@ -135,5 +162,6 @@ class MintWriter {
      */
 	private void setField(String id, String data) throws IOException, DocumentException {
 		fields.setField(id, data);
+		filledBytes += data.getBytes(StandardCharsets.UTF_8).length;
 	}
 }
@@ -0,0 +1,39 @@
+package mintec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Ziel, in das die erzeugten Zertifikate und das Gesamtdokument geschrieben werden.
+ *
+ * Die Zertifikate werden entweder als einzelne Dateien in ein Verzeichnis geschrieben
+ * ({@link DirectorySink}) oder nacheinander in ein ZIP-Archiv ({@link ZipSink}).
+ */
+interface OutputSink extends Closeable {
+	/**
+	 * Legt eine neue Ausgabedatei an.
+	 *
+	 * Es darf immer nur eine Ausgabedatei gleichzeitig geöffnet sein. Der zurückgegebene Stream
+	 * muss geschlossen werden, bevor die nächste Datei angelegt wird.
+	 *
+	 * @param name Dateiname der Ausgabedatei.
+	 * @return OutputStream, in den der Inhalt der Datei geschrieben wird.
+	 * @throws IOException Wenn die Datei nicht angelegt werden kann.
+	 */
+	OutputStream create(String name) throws IOException;
+
+	/**
+	 * Entfernt eine Ausgabedatei, die bei einer früheren Bearbeitung in das Ausgabeziel geschrieben wurde.
+	 *
+	 * @param name Dateiname der Ausgabedatei.
+	 * @throws IOException Wenn die Datei vorhanden ist, aber nicht gelöscht werden kann.
+	 */
+	void delete(String name) throws IOException;
+
+	/**
+	 * Bricht das Schreiben ab, z.B. wenn die Bearbeitung abgebrochen wurde. Bereits geschriebene einzelne
+	 * Dateien bleiben erhalten, ein unvollständiges ZIP-Archiv wird dagegen verworfen.
+	 */
+	void abort();
+}
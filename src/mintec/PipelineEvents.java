@@ -0,0 +1,105 @@
+package mintec;
+
+import mintec.FileProcessorResult.State;
+
+/**
+ * Ereignisse für den Java Flight Recorder (JFR), mit denen die Bearbeitung einzelner Anträge im Betrieb
+ * untersucht werden kann.
+ *
+ * Für jeden Antrag und jeden Schritt der Bearbeitung (siehe {@link Stage}) wird ein Ereignis mit Dateiname,
+ * Größe in Bytes und Ergebnis erzeugt. In einer JFR-Aufzeichnung lassen sich so langsame Anträge den
+ * gleichzeitigen Pausen der Garbage Collection oder Wartezeiten beim Lesen und Schreiben zuordnen.
+ *
+ * Diese Klasse kapselt den Zugriff auf JFR, da das Programm auch mit Java-Versionen ohne JFR laufen soll.
+ * Ist JFR nicht vorhanden, liefert {@link #begin} ein Ereignis, welches nichts tut. Ist JFR vorhanden, aber
+ * keine Aufzeichnung aktiv, wird das Ereignis ebenfalls sofort verworfen.
+ *
+ * Ein Ereignis wird erst mit {@link Span#end} geschrieben. Bricht ein Schritt mit einer Exception ab, entsteht
+ * für diesen Schritt kein Ereignis; der Fehler ist dann im Ereignis des gesamten Antrags enthalten.
+ */
+final class PipelineEvents {
+	/** Die Schritte der Bearbeitung eines Antrags. */
+	enum Stage {
+		/** Lesen der Excel-Datei in den Arbeitsspeicher, siehe {@link Prefetcher}. */
+		READ,
+		/** Öffnen der Arbeitsmappe mit POI. */
+		OPEN,
+		/** Auslesen und Prüfen der Daten in {@link MintReader}. */
+		EXTRACT,
+		/** Laden der Vorlage aus dem {@link TemplateCache}. */
+		TEMPLATE,
+		/** Füllen der Formularfelder in {@link MintWriter}. Die Größe ist die der eingetragenen Texte. */
+		STAMP,
+		/** Schließen des PdfStamper, welches das Zertifikat schreibt. */
+		CLOSE,
+		/** Hinzufügen zum Gesamtdokument bzw. Abschließen des Gesamtdokuments, siehe {@link Aggregate}. */
+		AGGREGATE
+	}
+
+	/** Ein begonnenes Ereignis. */
+	interface Span {
+		/**
+		 * Beendet das Ereignis und schreibt es, falls eine Aufzeichnung aktiv ist.
+		 *
+		 * @param bytes Die Größe der bearbeiteten Daten in Bytes.
+		 * @param state Das Ergebnis, oder null wenn der Schritt kein eigenes Ergebnis hat.
+		 */
+		void end(long bytes, State state);
+	}
+
+	/** Ein Ereignis, welches nichts tut. Wird verwendet, wenn JFR nicht vorhanden oder keine Aufzeichnung aktiv ist. */
+	static final Span NONE = new Span() {
+		@Override
+		public void end(long bytes, State state) {
+		}
+	};
+
+	/** Erzeugt die Ereignisse, siehe {@link JfrEvents}. */
+	interface Recorder {
+		/** Siehe {@link PipelineEvents#begin}. */
+		Span beginStage(Stage stage, String file);
+
+		/** Siehe {@link PipelineEvents#beginEntry}. */
+		Span beginEntry(String file);
+	}
+
+	/** Die JFR-Ereignisse, oder null wenn JFR in dieser Java-Version nicht vorhanden ist. */
+	private static final Recorder RECORDER = load();
+
+	private PipelineEvents() {
+	}
+
+	/**
+	 * Lädt {@link JfrEvents} erst zur Laufzeit, da die Klasse beim Übersetzen mit einem JDK ohne JFR
+	 * ausgelassen wird (siehe build.xml).
+	 */
+	private static Recorder load() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return Class.forName("mintec.JfrEvents").asSubclass(Recorder.class).getDeclaredConstructor().newInstance();
+		} catch(ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Beginnt das Ereignis für einen Schritt der Bearbeitung.
+	 *
+	 * @param stage Der Schritt.
+	 * @param file Der Name des Antrags bzw. der geschriebenen Datei.
+	 * @return Das begonnene Ereignis.
+	 */
+	static Span begin(Stage stage, String file) {
+		return RECORDER != null ? RECORDER.beginStage(stage, file) : NONE;
+	}
+
+	/**
+	 * Beginnt das Ereignis für die gesamte Bearbeitung eines Antrags.
+	 *
+	 * @param file Der Name des Antrags.
+	 * @return Das begonnene Ereignis.
+	 */
+	static Span beginEntry(String file) {
+		return RECORDER != null ? RECORDER.beginEntry(file) : NONE;
+	}
+}
@@ -0,0 +1,165 @@
+package mintec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import mintec.PipelineEvents.Span;
+import mintec.PipelineEvents.Stage;
+
+/**
+ * Liest die Excel-Dateien der als nächstes bearbeiteten Anträge im Voraus in den Arbeitsspeicher.
+ *
+ * Liegen die Anträge auf einem Netzlaufwerk, dauert das Öffnen und Lesen einer Datei oft länger als ihre
+ * Bearbeitung. Ein eigener Lese-Thread liest deshalb die Anträge, die als nächstes bearbeitet werden, bereits
+ * während die vorherigen Anträge noch bearbeitet werden. Die Bearbeitung liest den Antrag dann nur noch aus
+ * dem Arbeitsspeicher ({@link MemoryInput}).
+ *
+ * Der Speicher für die im Voraus gelesenen Dateien ist begrenzt: ist das Budget erschöpft, wartet der
+ * Lese-Thread, bis bearbeitete Anträge ihren Speicher wieder freigeben. Eine einzelne Datei, die größer als
+ * das gesamte Budget ist, wird gelesen, sobald kein anderer Antrag Speicher belegt.
+ *
+ * Die Anträge werden in der Reihenfolge von {@link #fetch} gelesen. Sie müssen auch in dieser Reihenfolge
+ * zur Bearbeitung gegeben werden, da sonst ein wartender Antrag den Speicher blockieren könnte, auf den der
+ * Lese-Thread wartet.
+ */
+class Prefetcher implements AutoCloseable {
+	/** Anzahl der Anträge, die höchstens im Voraus gelesen werden. */
+	final int readAhead;
+
+	private final long budget;
+	private final EntryLimits limits;
+	private long available;
+
+	private final ExecutorService reader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, "mintec-prefetch");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * @param readAhead Anzahl der Anträge, die höchstens im Voraus gelesen werden.
+	 * @param budget Größe des Arbeitsspeichers in Bytes, den die im Voraus gelesenen Dateien belegen dürfen.
+	 * @param limits Die Grenzen, die beim Lesen eingehalten werden müssen.
+	 */
+	Prefetcher(int readAhead, long budget, EntryLimits limits) {
+		this.readAhead = readAhead;
+		this.budget = budget;
+		this.available = budget;
+		this.limits = limits;
+	}
+
+	/** Ein Antrag, dessen Excel-Datei im Voraus gelesen wird. */
+	class Fetch {
+		private final String name;
+		private final Future<FileEntry> loaded;
+		private final long reserved;
+
+		private Fetch(String name, Future<FileEntry> loaded, long reserved) {
+			this.name = name;
+			this.loaded = loaded;
+			this.reserved = reserved;
+		}
+
+		/**
+		 * Wartet, bis die Datei gelesen ist, bearbeitet den Antrag und gibt danach den Speicher frei. Die gesamte
+		 * Bearbeitung wird als Ereignis aufgezeichnet, siehe {@link PipelineEvents#beginEntry}.
+		 *
+		 * @param processor Der Processor, der den Antrag bearbeitet.
+		 * @return Das Ergebnis der Bearbeitung. Ist das Lesen fehlgeschlagen, enthält es den Fehler.
+		 */
+		EntryProcessor.Result process(EntryProcessor processor) {
+			Span span = PipelineEvents.beginEntry(name);
+			FileEntry memory;
+			EntryProcessor.Result result;
+			long bytes = 0;
+			try {
+				memory = loaded.get();
+				bytes = memory.input.size();
+				try {
+					result = processor.process(memory);
+				} finally {
+					release(reserved);
+				}
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				result = new EntryProcessor.Result(new ArrayList<MintReader.Problem>(), e, null);
+			} catch(ExecutionException e) {
+				Throwable cause = e.getCause();
+				Exception exception = cause instanceof Exception ? (Exception)cause : new Exception(cause);
+				result = new EntryProcessor.Result(new ArrayList<MintReader.Problem>(), exception, null);
+			}
+			span.end(bytes, new FileProcessorResult(result.exception, result.problems, -1).state);
+			return result;
+		}
+	}
+
+	/**
+	 * Beginnt mit dem Lesen eines Antrags. Kehrt sofort zurück.
+	 *
+	 * @param entry Der Antrag, der als nächstes zur Bearbeitung gegeben wird.
+	 * @return Der Antrag, der mit {@link Fetch#process} bearbeitet werden kann.
+	 */
+	Fetch fetch(final FileEntry entry) {
+		long size = entry.input.size();
+		final long reserved = Math.min(budget, size < 0 ? limits.maxInputBytes : Math.min(size, limits.maxInputBytes));
+		Future<FileEntry> loaded = reader.submit(new Callable<FileEntry>() {
+			@Override
+			public FileEntry call() throws IOException, InterruptedException {
+				acquire(reserved);
+				try {
+					byte[] workbook;
+					long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(limits.timeoutSeconds);
+					Span span = PipelineEvents.begin(Stage.READ, entry.input.getName());
+					try(InputStream in = entry.input.open()) {
+						workbook = LocalProcessor.readLimited(in, limits, deadline);
+					}
+					span.end(workbook.length, null);
+					return new FileEntry(new MemoryInput(entry.input.getName(), workbook), entry.outputName, entry.school);
+				} catch(IOException | RuntimeException e) {
+					release(reserved);
+					throw e;
+				}
+			}
+		});
+		return new Fetch(entry.input.getName(), loaded, reserved);
+	}
+
+	private synchronized void acquire(long bytes) throws InterruptedException {
+		while(available < bytes) wait();
+		available -= bytes;
+	}
+
+	private synchronized void release(long bytes) {
+		available += bytes;
+		notifyAll();
+	}
+
+	/**
+	 * Bricht alle wartenden Aufgaben ab und wartet, bis die laufende Aufgabe beendet ist. Der Lese-Thread greift danach nicht mehr auf die Quellen der Anträge zu.
+	 */
+	@Override
+	public void close() {
+		reader.shutdownNow();
+		boolean interrupted = false;
+		while(true) {
+			try {
+				if(reader.awaitTermination(1, TimeUnit.MINUTES)) break;
+			} catch(InterruptedException e) {
+				// Auch ein abgebrochener Thread muss warten, die Unterbrechung wird danach wiederhergestellt
+				interrupted = true;
+			}
+		}
+		if(interrupted) Thread.currentThread().interrupt();
+	}
+}
@@ -0,0 +1,118 @@
+package mintec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.ss.usermodel.Workbook;
+
+import mintec.FileProcessorResult.State;
+import mintec.MintReader.Rule;
+
+/**
+ * Vorabprüfung vieler Anträge, ohne Zertifikate zu erstellen.
+ *
+ * Die Anträge werden wie bei der Bearbeitung eingelesen und geprüft, alle festgestellten Probleme werden in einen
+ * CSV-Problembericht ({@link CsvProblemReport}) geschrieben. Mit {@value #ONLY_ARGUMENT} bzw. {@value #SKIP_ARGUMENT}
+ * werden nur die angegebenen Prüfungen durchgeführt bzw. die angegebenen Prüfungen abgeschaltet (siehe
+ * {@link MintReader.Rule}), z.B. um vor dem Einsammeln der Anträge nur nach fehlenden Namen zu suchen.
+ *
+ * Das Programm endet mit dem Rückgabewert 1, wenn mindestens ein Antrag einen Fehler enthält.
+ *
+ * Aufruf: {@code java -cp app.jar mintec.Preflight [--nur=REGEL,...|--ohne=REGEL,...] <Bericht.csv> <Datei, Verzeichnis oder ZIP-Archiv>...}
+ */
+class Preflight {
+	static final String ONLY_ARGUMENT = "--nur=";
+	static final String SKIP_ARGUMENT = "--ohne=";
+
+	public static void main(String[] args) throws IOException {
+		int next = 0;
+		Set<Rule> rules = EnumSet.allOf(Rule.class);
+		try {
+			if(args.length > 0 && args[0].startsWith(ONLY_ARGUMENT)) {
+				rules = parseRules(args[next++].substring(ONLY_ARGUMENT.length()));
+			} else if(args.length > 0 && args[0].startsWith(SKIP_ARGUMENT)) {
+				rules.removeAll(parseRules(args[next++].substring(SKIP_ARGUMENT.length())));
+			}
+		} catch(IllegalArgumentException e) {
+			System.err.println("Unbekannte Prüfung: " + e.getMessage());
+			next = args.length;
+		}
+		if(args.length - next < 2) {
+			System.err.println("Aufruf: java -cp app.jar mintec.Preflight [" + ONLY_ARGUMENT + "REGEL,...|" + SKIP_ARGUMENT + "REGEL,...] <Bericht.csv> <Datei, Verzeichnis oder ZIP-Archiv>...");
+			System.err.println("Prüfungen: " + EnumSet.allOf(Rule.class));
+			System.exit(2);
+		}
+
+		File reportFile = new File(args[next++]);
+		List<InputSource> sources = new ArrayList<>();
+		ExcelFilter excel = new ExcelFilter();
+		for(int i = next; i < args.length; i++) {
+			File argument = new File(args[i]);
+			File[] files = { argument };
+			if(argument.isDirectory()) files = argument.listFiles(excel);
+			for(File file : files) {
+				if(file.isDirectory()) continue;
+				if(ExcelFilter.isZipFile(file.getName())) sources.addAll(ZipInput.entries(file));
+				else sources.add(new FileInput(file));
+			}
+		}
+
+		Map<State, Integer> counts = new EnumMap<>(State.class);
+		for(State state : State.values()) counts.put(state, 0);
+		MintReader.Rules selected = new MintReader.Rules(rules);
+		try(ProblemReport report = new CsvProblemReport(reportFile)) {
+			for(InputSource source : sources) {
+				FileProcessorResult result = check(source, selected, EntryLimits.DEFAULT);
+				counts.put(result.state, counts.get(result.state) + 1);
+				report.write(new FileEntry(source, source.getName(), null), result);
+			}
+		} finally {
+			for(InputSource source : sources) source.close();
+		}
+
+		System.out.println(sources.size() + " Anträge geprüft (" + rules + "): " + counts.get(State.OK) + " ohne Probleme, "
+			+ counts.get(State.WARN) + " mit Warnungen, " + counts.get(State.FAIL) + " mit Fehlern");
+		System.out.println("Problembericht in " + reportFile + " gespeichert");
+		if(counts.get(State.FAIL) > 0) System.exit(1);
+	}
+
+	/** Liest eine durch Kommas getrennte Liste von Prüfungen. */
+	private static Set<Rule> parseRules(String list) {
+		Set<Rule> rules = EnumSet.noneOf(Rule.class);
+		for(String name : list.split(",")) {
+			if(name.trim().isEmpty()) continue;
+			try {
+				rules.add(Rule.valueOf(name.trim().toUpperCase()));
+			} catch(IllegalArgumentException e) {
+				throw new IllegalArgumentException(name.trim(), e);
+			}
+		}
+		return rules;
+	}
+
+	/**
+	 * Liest einen Antrag ein und führt die ausgewählten Prüfungen durch.
+	 *
+	 * Die Datei wird mit denselben {@link EntryLimits} wie bei der Bearbeitung gelesen.
+	 */
+	private static FileProcessorResult check(InputSource source, MintReader.Rules rules, EntryLimits limits) {
+		try {
+			byte[] workbook;
+			try(InputStream in = source.open()) {
+				workbook = LocalProcessor.readLimited(in, limits, System.nanoTime() + TimeUnit.SECONDS.toNanos(limits.timeoutSeconds));
+			}
+			Workbook book = LocalProcessor.openWorkbook(workbook, limits);
+			return new FileProcessorResult(null, new MintReader(book, rules).getProblems(), -1);
+		} catch(Exception e) {
+			return new FileProcessorResult(e, new ArrayList<MintReader.Problem>(), -1);
+		}
+	}
+}
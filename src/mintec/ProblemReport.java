@@ -0,0 +1,22 @@
+package mintec;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Ein Bericht, in den die festgestellten Probleme aller Anträge geschrieben werden.
+ *
+ * Die Probleme werden direkt geschrieben, sobald ein Antrag bearbeitet wurde, sodass auch bei sehr vielen
+ * Anträgen nicht alle Meldungen im Arbeitsspeicher gehalten werden müssen. Der Bericht kann anschließend
+ * z.B. in einer Tabellenkalkulation sortiert und gefiltert werden.
+ */
+interface ProblemReport extends Closeable {
+	/**
+	 * Schreibt alle Probleme eines Antrags in den Bericht.
+	 *
+	 * @param entry Der Antrag.
+	 * @param result Das Ergebnis der Bearbeitung des Antrags.
+	 * @throws IOException Wenn das Schreiben fehlschlägt.
+	 */
+	void write(FileEntry entry, FileProcessorResult result) throws IOException;
+}
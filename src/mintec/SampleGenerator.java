@@ -0,0 +1,308 @@
+package mintec;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.PdfWriter;
+import com.itextpdf.text.pdf.TextField;
+
+import mintec.FileProcessorResult.State;
+
+/**
+ * Erzeugt künstliche Anträge (Formularversion 1.0.0) für Lasttests.
+ *
+ * Da echte Anträge von Schülern nicht weitergegeben werden dürfen, erzeugt diese Klasse zufällige, aber
+ * gültige Anträge mit allen Varianten der Abschnitte I und II sowie vollständigen Listen von Aktivitäten.
+ * Ein Teil der Anträge enthält absichtlich Fehler (siehe {@link Defect}), die von {@link MintReader}
+ * erkannt werden müssen. Zu jedem Antrag ist bekannt, welcher Status bei der Bearbeitung erwartet wird.
+ * Bei einem Teil der gültigen Anträge passen die gespeicherten Ergebnisse der Formeln nicht zu den Noten oder
+ * fehlen ganz (siehe {@link Results}). Jeder {@value #XLSX_INTERVAL}. Antrag wird als .xlsx-Datei gespeichert,
+ * die übrigen als .xls-Datei.
+ *
+ * Die erwarteten Ergebnisse stammen aus von Hand berechneten Tabellen ({@link #SUBJECT_GRADES}) und nicht aus
+ * {@link LevelCalculator}, damit die Berechnung in {@link MintReader} tatsächlich überprüft wird.
+ *
+ * Aufruf: {@code java -cp app.jar mintec.SampleGenerator <Verzeichnis> [Anzahl] [Startwert]}
+ */
+class SampleGenerator {
+	/** Die absichtlich eingebauten Fehler. */
+	enum Defect {
+		/** Kein Fehler, der Antrag ist gültig. */
+		NONE,
+		/** Falsche Formularversion in Zelle A3. */
+		VERSION,
+		/** Die Stufe in Zelle H6 passt nicht zum Durchschnitt in E7. */
+		MANIPULATED_LEVEL,
+		/** Text in einer Zelle, die eine Zahl enthalten muss. */
+		TEXT_IN_NUMBER,
+		/** Der Name des Schülers fehlt. */
+		MISSING_NAME
+	}
+
+	/** Wie die Ergebnisse der Formeln in einem Antrag ohne {@link Defect} gespeichert sind. */
+	enum Results {
+		/** Alle Ergebnisse sind gespeichert. */
+		STORED,
+		/** Der gespeicherte Durchschnitt in E7 passt nicht zu den Noten, die Stufe in H6 schon (Warnung). */
+		STALE_MEAN,
+		/**
+		 * Durchschnitt und Stufe in Abschnitt I sind Formeln ohne gespeichertes Ergebnis. Der Durchschnitt wird
+		 * aus den Noten berechnet (Warnung). Nur in .xlsx-Dateien möglich.
+		 */
+		MISSING_MEAN,
+		/**
+		 * Alle Ergebnisse sind Formeln ohne gespeichertes Ergebnis. Die Stufen der Abschnitte II und III können
+		 * nicht bestimmt werden (Fehler). Nur in .xlsx-Dateien möglich.
+		 */
+		MISSING_ALL
+	}
+
+	/** Ein erzeugter Antrag zusammen mit dem erwarteten Ergebnis der Bearbeitung. */
+	static class Sample {
+		final File file;
+		final Defect defect;
+		final State expected;
+
+		Sample(File file, Defect defect, State expected) {
+			this.file = file;
+			this.defect = defect;
+			this.expected = expected;
+		}
+	}
+
+	/** Jeder wievielte Antrag einen Fehler enthält. */
+	private static final int DEFECT_INTERVAL = 10;
+
+	/** Jeder wievielte Antrag als .xlsx-Datei gespeichert wird. */
+	private static final int XLSX_INTERVAL = 4;
+
+	/**
+	 * Noten für Abschnitt I, jeweils mit dem von Hand berechneten Durchschnitt und der zugehörigen Stufe (ab 9, 11
+	 * bzw. 13 Punkten): {Durchschnitt, Stufe, Noten...}. Zwei Noten stehen für die Variante mit zwei Fächern, drei
+	 * Noten für die mit drei Fächern. Ein um {@value #STALE_OFFSET} Punkte zu hoher Durchschnitt ergibt bei keinem
+	 * Eintrag eine andere Stufe.
+	 */
+	private static final double[][] SUBJECT_GRADES = {
+		{8.5, 0, 8, 9}, {9.5, 1, 9, 10}, {11, 2, 10, 12}, {11.5, 2, 11, 12}, {14, 3, 13, 15},
+		{8, 0, 7, 8, 9}, {28 / 3.0, 1, 9, 9, 10}, {34 / 3.0, 2, 11, 11, 12}, {13, 3, 12, 13, 14}
+	};
+
+	/** Abweichung des gespeicherten Durchschnitts bei {@link Results#STALE_MEAN}. */
+	private static final double STALE_OFFSET = 0.25;
+
+	/** Die Namen der Formularfelder der Vorlage, siehe {@link MintWriter}. */
+	private static final String[] TEMPLATE_FIELDS = {
+		"Vor- und Nachname", "Schulbezeichnung", "geboren am Tag / Monat / Jahr", "Gesamteinstufung",
+		"Fachliche Kompetenz", "Fachwissenschaftliches Arbeiten", "Zusätzliche MINT-Aktivitäten"
+	};
+
+	private static final String[] FIRST_NAMES = { "Anna", "Ben", "Clara", "David", "Emma", "Felix", "Greta", "Hannes", "Ida", "Jonas", "Lena", "Moritz" };
+	private static final String[] LAST_NAMES = { "Müller", "Schmidt", "Schneider", "Fischer", "Weber", "Meyer", "Wagner", "Becker", "Schulz", "Hoffmann" };
+	private static final String[] SUBJECTS = { "Mathematik", "Physik", "Chemie", "Biologie", "Informatik", "Astronomie", "Technik" };
+	private static final String[] ACTIVITIES = {
+		"Mathematik-Olympiade", "Physik-Olympiade", "Chemie-Olympiade", "Känguru der Mathematik", "Informatik-Biber",
+		"Robotik-AG", "Schülerlabor", "MINT-Camp", "Jugend forscht Regionalwettbewerb", "Schülerakademie",
+		"Astronomie-AG", "Sommeruniversität", "Bundeswettbewerb Mathematik", "Programmier-AG", "Betriebspraktikum Labor"
+	};
+	private static final String[] COMPETITION_RESULTS = { "Regionalsieger", "Landessieger", "Bundessieger" };
+
+	private final Random random;
+
+	private SampleGenerator(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Erzeugt eine Anzahl von Anträgen in einem Verzeichnis.
+	 *
+	 * @param directory Das Verzeichnis, in das die Anträge geschrieben werden.
+	 * @param count Anzahl der Anträge.
+	 * @param seed Startwert für den Zufallsgenerator. Gleiche Startwerte erzeugen gleiche Anträge.
+	 * @return Die erzeugten Anträge.
+	 * @throws IOException Wenn das Schreiben fehlschlägt.
+	 */
+	static List<Sample> generate(File directory, int count, long seed) throws IOException {
+		SampleGenerator generator = new SampleGenerator(seed);
+		Defect[] defects = Defect.values();
+		List<Sample> samples = new ArrayList<>();
+		for(int i = 0; i < count; i++) {
+			Defect defect = i % DEFECT_INTERVAL == DEFECT_INTERVAL - 1 ? defects[1 + (i / DEFECT_INTERVAL) % (defects.length - 1)] : Defect.NONE;
+			boolean xlsx = i % XLSX_INTERVAL == 1;
+			File file = new File(directory, String.format("antrag-%05d-%s.%s", i, defect.name().toLowerCase(), xlsx ? "xlsx" : "xls"));
+			samples.add(generator.write(file, defect, xlsx ? new XSSFWorkbook() : new HSSFWorkbook()));
+		}
+		return samples;
+	}
+
+	/**
+	 * Schreibt eine einfache PDF-Vorlage, die alle von {@link MintWriter} verwendeten Formularfelder enthält.
+	 *
+	 * @param file Die Datei, in welche die Vorlage geschrieben wird.
+	 * @throws IOException Wenn das Schreiben fehlschlägt.
+	 * @throws DocumentException Wenn das PDF-Dokument nicht erzeugt werden kann.
+	 */
+	static void writeTemplate(File file) throws IOException, DocumentException {
+		try(OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+			Document document = new Document();
+			PdfWriter writer = PdfWriter.getInstance(document, out);
+			document.open();
+			document.add(new Paragraph("MINT-EC Zertifikat (Testvorlage)"));
+			float top = document.top() - 40;
+			for(String field : TEMPLATE_FIELDS) {
+				TextField text = new TextField(writer, new Rectangle(document.left(), top - 90, document.right(), top), field);
+				text.setOptions(TextField.MULTILINE);
+				text.setFontSize(0);
+				writer.addAnnotation(text.getTextField());
+				top -= 100;
+			}
+			document.close();
+		}
+	}
+
+	private Sample write(File file, Defect defect, Workbook workbook) throws IOException {
+		Sheet sheet = workbook.createSheet("Antrag");
+		// MintReader erwartet, dass alle Zellen des Formulars existieren
+		for(int row = 0; row < 72; row++) {
+			Row cells = sheet.createRow(row);
+			for(int column = 0; column < 8; column++) cells.createCell(column).setCellValue("");
+		}
+		CellStyle dateStyle = workbook.createCellStyle();
+		dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("dd.mm.yyyy"));
+
+		Results results = Results.STORED;
+		if(defect == Defect.NONE) {
+			boolean xlsx = workbook instanceof XSSFWorkbook;
+			switch(random.nextInt(10)) {
+				case 0: results = Results.STALE_MEAN; break;
+				case 1: if(xlsx) results = Results.MISSING_MEAN; break;
+				case 2: if(xlsx) results = Results.MISSING_ALL; break;
+				default: break;
+			}
+		}
+		State expected = defect != Defect.NONE || results == Results.MISSING_ALL ? State.FAIL
+			: results != Results.STORED ? State.WARN : State.OK;
+
+		set(sheet, 1, 3, defect == Defect.VERSION ? "0.9.2" : "1.0.0");
+		set(sheet, 3, 1, defect == Defect.MISSING_NAME ? "" : pick(FIRST_NAMES) + " " + pick(LAST_NAMES));
+		Cell date = cell(sheet, 3, 2);
+		date.setCellValue(new GregorianCalendar(2000 + random.nextInt(9), random.nextInt(12), 1 + random.nextInt(28)).getTime());
+		date.setCellStyle(dateStyle);
+
+		// Die Formeln werden beim Einlesen nicht ausgewertet, es kommt nur darauf an, dass ihr Ergebnis fehlt.
+		boolean missingMean = results == Results.MISSING_MEAN || results == Results.MISSING_ALL;
+		boolean missingLevels = results == Results.MISSING_ALL;
+
+		// Abschnitt I - Fachliche Kompetenz
+		double[] subjects = SUBJECT_GRADES[random.nextInt(SUBJECT_GRADES.length)];
+		boolean twoSubjects = subjects.length == 4;
+		int[] rows = twoSubjects ? new int[]{7, 8} : new int[]{10, 11, 12};
+		for(int i = 0; i < rows.length; i++) {
+			set(sheet, 2, rows[i], SUBJECTS[random.nextInt(SUBJECTS.length)]);
+			set(sheet, 4, rows[i], subjects[2 + i]);
+		}
+		double mean = subjects[0];
+		int subjectsLevel = (int)subjects[1];
+		if(missingMean) {
+			formula(sheet, 5, 7, twoSubjects ? "AVERAGE(D7:D8)" : "AVERAGE(D10:D12)");
+			formula(sheet, 8, 6, "IF(E7>=13,3,IF(E7>=11,2,IF(E7>=9,1,0)))");
+		} else {
+			set(sheet, 5, 7, results == Results.STALE_MEAN ? mean + STALE_OFFSET : mean);
+			set(sheet, 8, 6, defect == Defect.MANIPULATED_LEVEL ? (subjectsLevel == 3 ? 2 : subjectsLevel + 1) : subjectsLevel);
+		}
+
+		// Überflüssige Angaben in der anderen Variante ergeben nur eine Warnung
+		if(defect == Defect.NONE && random.nextInt(10) == 0) {
+			set(sheet, 2, twoSubjects ? 10 : 7, SUBJECTS[random.nextInt(SUBJECTS.length)]);
+			if(expected == State.OK) expected = State.WARN;
+		}
+
+		// Abschnitt II - Fachwissenschaftliches Arbeiten, Varianten A bis D. Die Stufen der Varianten A bis C
+		// berechnet das Formular aus der Note; hier wird nur eine Stufe von 1 bis 3 gespeichert.
+		int[] variantRows = {15, 17, 20, 23};
+		int variant = random.nextInt(variantRows.length);
+		for(int i = 0; i < variantRows.length; i++) {
+			if(missingLevels && i < 3) formula(sheet, 5, variantRows[i], "N(D" + variantRows[i] + ")");
+			else set(sheet, 5, variantRows[i], 0);
+		}
+		int nameRow = variantRows[variant];
+		set(sheet, 2, nameRow, variant == 3 ? "Jugend forscht" : SUBJECTS[random.nextInt(SUBJECTS.length)]);
+		if(variant > 0) set(sheet, 2, nameRow + 1, "Untersuchung Nr. " + random.nextInt(1000));
+		int level = 1 + random.nextInt(3);
+		if(variant == 3) {
+			set(sheet, 2, nameRow + 2, COMPETITION_RESULTS[level - 1]);
+			set(sheet, 5, nameRow, level);
+		} else {
+			set(sheet, 4, nameRow, 9 + random.nextInt(7));
+			if(!missingLevels) set(sheet, 5, nameRow, level);
+		}
+		if(defect == Defect.TEXT_IN_NUMBER) set(sheet, 5, variantRows[(variant + 1) % variantRows.length], "zwei");
+
+		// Abschnitt III - Zusätzliche MINT-Aktivitäten, teilweise mit vollständig gefüllten Listen
+		boolean full = random.nextInt(20) == 0;
+		int activities1 = full ? 20 : 1 + random.nextInt(6);
+		int activities2 = full ? 20 : 1 + random.nextInt(6);
+		for(int i = 0; i < activities1; i++) set(sheet, 2, 28 + i, pick(ACTIVITIES));
+		for(int i = 0; i < activities2; i++) set(sheet, 2, 49 + i, pick(ACTIVITIES));
+		// Mit den Stufen 1 bis 3 in den Abschnitten II und III ergibt sich immer eine Gesamteinstufung, auch
+		// wenn in Abschnitt I Stufe 0 erreicht wird.
+		if(missingLevels) formula(sheet, 8, 72, "COUNTA(B28:B47,B49:B68)");
+		else set(sheet, 8, 72, 1 + random.nextInt(3));
+
+		try(OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+			workbook.write(out);
+		}
+		return new Sample(file, defect, expected);
+	}
+
+	private String pick(String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+
+	private static Cell cell(Sheet sheet, int column, int row) {
+		return sheet.getRow(row - 1).getCell(column - 1);
+	}
+
+	/** Schreibt eine Formel ohne Ergebnis (nur in .xlsx-Dateien, siehe {@link Results}). */
+	private static void formula(Sheet sheet, int column, int row, String formula) {
+		cell(sheet, column, row).setCellFormula(formula);
+	}
+
+	private static void set(Sheet sheet, int column, int row, Object value) {
+		Cell cell = cell(sheet, column, row);
+		if(value instanceof String) cell.setCellValue((String)value);
+		else cell.setCellValue(((Number)value).doubleValue());
+	}
+
+	public static void main(String[] args) throws IOException, DocumentException {
+		if(args.length < 1) {
+			System.err.println("Aufruf: java -cp app.jar mintec.SampleGenerator <Verzeichnis> [Anzahl] [Startwert]");
+			System.exit(2);
+		}
+		File directory = new File(args[0]);
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+		if(!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Verzeichnis " + directory + " kann nicht angelegt werden");
+		generate(directory, count, seed);
+		writeTemplate(new File(directory, School.DEFAULT_TEMPLATE));
+		System.out.println(count + " Anträge und " + School.DEFAULT_TEMPLATE + " in " + directory + " erzeugt");
+	}
+}
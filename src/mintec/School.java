@@ -0,0 +1,116 @@
+package mintec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * Die Einstellungen einer Schule, für die Zertifikate erstellt werden.
+ *
+ * Die Schulen werden aus der Datei {@value #CONFIG_NAME} gelesen, die sich im selben Ordner wie die
+ * Jar-Datei des Programms befindet. Für jede Schule enthält die Datei einen Eintrag der folgenden Form:
+ * <pre>
+ * mane.name = Martin-Andersen-Nexö Gymnasium Dresden
+ * mane.bezeichnung = am Martin-Andersen-Nexö Gymnasium Dresden
+ * mane.vorlage = template.pdf
+ * </pre>
+ *
+ * Dabei ist "mane" ein frei wählbarer Schlüssel für die Schule, "bezeichnung" der Text, der auf dem
+ * Zertifikat erscheint und "vorlage" der Pfad zur PDF-Vorlage (relativ zum Ordner der Jar-Datei).
+ * Existiert die Datei nicht, wird nur die Standardschule mit der Vorlage {@value #DEFAULT_TEMPLATE}
+ * verwendet.
+ */
+class School {
+	/** Name der Konfigurationsdatei mit den Einstellungen der Schulen. */
+	static final String CONFIG_NAME = "schulen.properties";
+
+	/** Name der Vorlage, wenn keine Konfigurationsdatei existiert. */
+	static final String DEFAULT_TEMPLATE = "template.pdf";
+
+	/** Der Schlüssel der Schule aus der Konfigurationsdatei. */
+	final String key;
+
+	/** Der Name der Schule, wie er im Programm angezeigt wird. */
+	final String name;
+
+	/** Die Bezeichnung der Schule, wie sie auf dem Zertifikat erscheint. */
+	final String designation;
+
+	/** Die PDF-Vorlage für die Zertifikate dieser Schule. */
+	final File template;
+
+	School(String key, String name, String designation, File template) {
+		this.key = key;
+		this.name = name;
+		this.designation = designation;
+		this.template = template;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if(!(other instanceof School)) return false;
+		School school = (School)other;
+		return key.equals(school.key) && designation.equals(school.designation) && template.equals(school.template);
+	}
+
+	@Override
+	public int hashCode() {
+		return key.hashCode() * 31 + template.hashCode();
+	}
+
+	/**
+	 * Liest die Einstellungen aller Schulen.
+	 *
+	 * @param folder Der Ordner, in dem sich die Konfigurationsdatei und die Vorlagen befinden.
+	 * @return Die Schulen, sortiert nach ihrem Schlüssel.
+	 * @throws IOException Wenn die Konfigurationsdatei nicht gelesen werden kann oder unvollständig ist.
+	 */
+	static List<School> load(File folder) throws IOException {
+		List<School> schools = new ArrayList<>();
+		File config = new File(folder, CONFIG_NAME);
+		if(!config.exists()) {
+			schools.add(new School("mane", "Martin-Andersen-Nexö Gymnasium Dresden", "am Martin-Andersen-Nexö Gymnasium Dresden", new File(folder, DEFAULT_TEMPLATE)));
+			return schools;
+		}
+
+		Properties properties = new Properties();
+		try(Reader reader = new InputStreamReader(new FileInputStream(config), StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+
+		TreeSet<String> keys = new TreeSet<>();
+		for(String property : properties.stringPropertyNames()) {
+			keys.add(property.substring(0, property.indexOf('.') < 0 ? property.length() : property.indexOf('.')));
+		}
+		for(String key : keys) {
+			String designation = required(properties, key, "bezeichnung");
+			String template = required(properties, key, "vorlage");
+			String name = properties.getProperty(key + ".name", designation);
+			File templateFile = new File(template);
+			if(!templateFile.isAbsolute()) templateFile = new File(folder, template);
+			schools.add(new School(key, name, designation, templateFile));
+		}
+		if(schools.isEmpty()) throw new IOException(CONFIG_NAME + " enthält keine Schulen");
+		return schools;
+	}
+
+	private static String required(Properties properties, String key, String setting) throws IOException {
+		String value = properties.getProperty(key + "." + setting);
+		if(value == null || value.trim().isEmpty()) {
+			throw new IOException(CONFIG_NAME + ": Eintrag " + key + "." + setting + " fehlt");
+		}
+		return value.trim();
+	}
+}
@@ -0,0 +1,72 @@
+package mintec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+
+import mintec.FileProcessorResult.State;
+
+/**
+ * Ein Index der Zeilen der Tabelle nach dem Status ihres Ergebnisses.
+ *
+ * Für jeden Status wird eine sortierte Liste der Zeilen mit diesem Status geführt. Damit können
+ * gefilterte Ansichten (z.B. "nur Fehler") und die Anzahl der Anträge pro Status direkt abgelesen
+ * werden, ohne bei jeder Änderung alle Zeilen der Tabelle durchsuchen zu müssen. Da die Ergebnisse
+ * meist in aufsteigender Reihenfolge der Zeilen eintreffen, ist das Einfügen in der Regel ein
+ * einfaches Anhängen.
+ */
+class StateIndex {
+	private final EnumMap<State, List<Integer>> rows = new EnumMap<>(State.class);
+
+	StateIndex() {
+		for(State state : State.values()) rows.put(state, new ArrayList<Integer>());
+	}
+
+	/**
+	 * @return Anzahl der Zeilen mit dem gegebenen Status.
+	 */
+	int count(State state) {
+		return rows.get(state).size();
+	}
+
+	/**
+	 * @param state Der Status.
+	 * @param position Position innerhalb der Zeilen mit diesem Status.
+	 * @return Die Zeile der Tabelle an dieser Position.
+	 */
+	int row(State state, int position) {
+		return rows.get(state).get(position);
+	}
+
+	/**
+	 * Nimmt eine Zeile in den Index auf.
+	 *
+	 * @return Die Position der Zeile innerhalb der Zeilen mit diesem Status.
+	 */
+	int add(State state, int row) {
+		List<Integer> list = rows.get(state);
+		if(list.isEmpty() || list.get(list.size() - 1) < row) {
+			list.add(row);
+			return list.size() - 1;
+		}
+		int position = Collections.binarySearch(list, row);
+		if(position >= 0) return position;
+		list.add(-position - 1, row);
+		return -position - 1;
+	}
+
+	/**
+	 * Entfernt eine Zeile aus dem Index.
+	 *
+	 * @return Die bisherige Position der Zeile innerhalb der Zeilen mit diesem Status, oder -1 wenn die
+	 *         Zeile nicht enthalten war.
+	 */
+	int remove(State state, int row) {
+		List<Integer> list = rows.get(state);
+		int position = Collections.binarySearch(list, row);
+		if(position < 0) return -1;
+		list.remove(position);
+		return position;
+	}
+}
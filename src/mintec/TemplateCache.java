@@ -0,0 +1,109 @@
+package mintec;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import com.itextpdf.text.pdf.AcroFields;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.TextField;
+
+/**
+ * Ein Zwischenspeicher für die bereits eingelesenen PDF-Vorlagen der Schulen.
+ *
+ * Jede Vorlage wird nur einmal gelesen und geparst. Für jedes Zertifikat wird dann eine unabhängige
+ * Kopie der geparsten Vorlage erstellt, was deutlich schneller ist als das erneute Parsen. Der
+ * Zwischenspeicher kann von mehreren Threads gleichzeitig verwendet werden, sodass Anträge
+ * verschiedener Schulen gemischt und parallel bearbeitet werden können.
+ *
+ * Für die Druckversion werden außerdem die Formularfelder der Vorlage zwischengespeichert, siehe
+ * {@link #borrowFields}.
+ */
+class TemplateCache {
+	/** Eine eingelesene Vorlage. */
+	private static class Template {
+		final PdfReader reader;
+
+		/** Die derzeit nicht verwendeten Zwischenspeicher für die Formularfelder der Vorlage. */
+		final Queue<Map<String, TextField>> fields = new ConcurrentLinkedQueue<>();
+
+		Template(PdfReader reader) {
+			this.reader = reader;
+		}
+	}
+
+	private final ConcurrentMap<School, Template> templates = new ConcurrentHashMap<>();
+
+	private Template load(School school) throws IOException {
+		Template template = templates.get(school);
+		if(template == null) {
+			Template loaded;
+			try {
+				loaded = new Template(new PdfReader(Files.readAllBytes(school.template.toPath())));
+			} catch(IOException e) {
+				throw new IOException("Vorlage " + school.template + " kann nicht gelesen werden", e);
+			}
+			template = templates.putIfAbsent(school, loaded);
+			if(template == null) template = loaded;
+		}
+		return template;
+	}
+
+	/**
+	 * Liefert eine Kopie der Vorlage einer Schule, die für ein einzelnes Zertifikat verwendet werden kann.
+	 *
+	 * @param school Die Schule, deren Vorlage benötigt wird.
+	 * @return Eine neue, unabhängige Kopie der Vorlage.
+	 * @throws IOException Wenn die Vorlage nicht gelesen werden kann.
+	 */
+	PdfReader get(School school) throws IOException {
+		Template template = load(school);
+		synchronized(template.reader) {
+			return new PdfReader(template.reader);
+		}
+	}
+
+	/**
+	 * Liefert einen Zwischenspeicher für die Formularfelder der Vorlage einer Schule, siehe
+	 * {@link AcroFields#setFieldCache}.
+	 *
+	 * Beim Erzeugen der Darstellung eines Formularfelds liest iText die Schrift des Felds aus den Ressourcen
+	 * des Formulars (/DR) und parst dabei auch eingebettete Schriften. Mit dem Zwischenspeicher geschieht das
+	 * nur beim ersten Zertifikat, alle weiteren Zertifikate verwenden die bereits geparsten Schriften der
+	 * Vorlage. Da die Felder beim Erzeugen der Darstellung verändert werden, darf ein Zwischenspeicher immer
+	 * nur für ein Zertifikat gleichzeitig verwendet werden; für parallel erzeugte Zertifikate werden weitere
+	 * Zwischenspeicher angelegt.
+	 *
+	 * Die zwischengespeicherten Schriften verweisen über ihre Objektnummer auf die Schrift in dem Zertifikat,
+	 * für das sie zuerst geparst wurden, und iText schreibt in den Darstellungen späterer Zertifikate nur diese
+	 * Objektnummer. Das ist nur deshalb korrekt, weil alle Zertifikate einer Schule Kopien derselben Vorlage
+	 * sind ({@link #get}) und die Schrift dort dieselbe Objektnummer hat. Ein Zwischenspeicher darf deshalb nie
+	 * für eine andere Vorlage verwendet werden; {@link #releaseFields} gibt ihn nur an seine Vorlage zurück.
+	 *
+	 * @param school Die Schule, deren Vorlage verwendet wird.
+	 * @return Der Zwischenspeicher, der nach dem Schließen des Zertifikats mit {@link #releaseFields}
+	 *         zurückgegeben werden muss.
+	 * @throws IOException Wenn die Vorlage nicht gelesen werden kann.
+	 */
+	Map<String, TextField> borrowFields(School school) throws IOException {
+		Map<String, TextField> fields = load(school).fields.poll();
+		return fields != null ? fields : new HashMap<String, TextField>();
+	}
+
+	/**
+	 * Gibt einen Zwischenspeicher für die Formularfelder zurück, siehe {@link #borrowFields}.
+	 *
+	 * @param school Die Schule, für deren Vorlage der Zwischenspeicher verwendet wurde.
+	 * @param fields Der Zwischenspeicher.
+	 */
+	void releaseFields(School school, Map<String, TextField> fields) {
+		// Die Felder sollen nicht das fertige Zertifikat im Speicher halten
+		for(TextField field : fields.values()) field.setWriter(null);
+		templates.get(school).fields.add(fields);
+	}
+}
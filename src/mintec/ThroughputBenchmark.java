@@ -0,0 +1,195 @@
+package mintec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+
+import com.itextpdf.text.DocumentException;
+
+/**
+ * Misst den Durchsatz der gesamten Bearbeitung ({@link FileTable}) mit künstlichen Anträgen.
+ *
+ * Es werden Anträge mit dem {@link SampleGenerator} erzeugt und anschließend wie in der Oberfläche
+ * bearbeitet. Dabei wird überprüft, dass jeder Antrag den erwarteten Status erhält. Gemessen werden die
+ * bearbeiteten Anträge pro Sekunde und der höchste Speicherverbrauch des Heaps.
+ *
+ * Die Anzahl der Anträge wird mit der System-Property {@value #COUNT_PROPERTY} festgelegt (Standard:
+ * {@value #DEFAULT_COUNT}), damit auch Durchläufe in der Größe eines ganzen Jahrgangs gemessen werden können.
+ *
+ * Die Messwerte werden mit den Vergleichswerten aus der Datei {@value #BASELINE_NAME} verglichen. Ist der
+ * Durchsatz um mehr als {@value #TOLERANCE_PERCENT} Prozent niedriger oder der Speicherverbrauch um mehr
+ * als {@value #TOLERANCE_PERCENT} Prozent höher, endet das Programm mit einem Fehler. Ebenso, wenn keine
+ * Vergleichswerte vorhanden sind oder diese mit einer anderen Anzahl von Anträgen gemessen wurden. Mit dem
+ * Argument {@value #RECORD_ARGUMENT} werden stattdessen die aktuellen Messwerte als neue Vergleichswerte
+ * gespeichert. Da die Messwerte vom Rechner abhängen, ist die Datei nicht Teil des Repositorys, sondern wird
+ * auf jedem Rechner selbst erstellt. Sie enthält eine Beschreibung des Rechners ({@link #machine()}); wurden die
+ * Vergleichswerte auf einem anderen Rechner oder mit einer anderen Java-Version gemessen, endet das Programm
+ * ebenfalls mit einem Fehler.
+ *
+ * Aufruf: {@code ant benchmark} bzw. {@code ant benchmark.record}, mit {@code -Dbenchmark.count=...} für
+ * eine andere Anzahl von Anträgen.
+ */
+class ThroughputBenchmark {
+	static final String BASELINE_NAME = "benchmark-baseline.properties";
+	static final String RECORD_ARGUMENT = "--record";
+	static final int TOLERANCE_PERCENT = 20;
+
+	static final String COUNT_PROPERTY = "mintec.benchmark.count";
+	static final int DEFAULT_COUNT = 5000;
+
+	private static final long SEED = 42;
+
+	public static void main(String[] args) throws IOException, DocumentException, InterruptedException, ExecutionException, InvocationTargetException {
+		String error = run(args.length > 0 && RECORD_ARGUMENT.equals(args[0]));
+		if(error != null) {
+			System.err.println("FEHLER: " + error);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Führt die Messung durch.
+	 *
+	 * @param record Legt fest, ob die Messwerte als neue Vergleichswerte gespeichert werden.
+	 * @return Eine Fehlermeldung, wenn die Messung fehlgeschlagen ist, sonst null.
+	 */
+	private static String run(boolean record) throws IOException, DocumentException, InterruptedException, ExecutionException, InvocationTargetException {
+		File baselineFile = new File(BASELINE_NAME);
+		if(!record && !baselineFile.exists()) {
+			return "Keine Vergleichswerte in " + baselineFile + " vorhanden, diese können mit " + RECORD_ARGUMENT + " (ant benchmark.record) gespeichert werden";
+		}
+		int count = Integer.getInteger(COUNT_PROPERTY, DEFAULT_COUNT);
+		if(count < 1) return COUNT_PROPERTY + " muss mindestens 1 sein";
+
+		Path work = Files.createTempDirectory("mintec-benchmark");
+		try {
+			File inputs = new File(work.toFile(), "antraege");
+			File outputs = new File(work.toFile(), "zertifikate");
+			if(!inputs.mkdir() || !outputs.mkdir()) throw new IOException("Arbeitsverzeichnis kann nicht angelegt werden");
+
+			List<SampleGenerator.Sample> samples = SampleGenerator.generate(inputs, count, SEED);
+			File template = new File(inputs, School.DEFAULT_TEMPLATE);
+			SampleGenerator.writeTemplate(template);
+			School school = new School("test", "Testschule", "am Testgymnasium", template);
+
+			final FileTable table = new FileTable();
+			for(SampleGenerator.Sample sample : samples) {
+				table.addEntry(new FileEntry(new FileInput(sample.file), sample.file.getName() + ".pdf", school));
+			}
+
+			System.gc();
+			for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) pool.resetPeakUsage();
+			long start = System.nanoTime();
+			SwingWorker<Void, FileProcessorResult> worker = table.process(new DirectorySink(outputs), false, false, new CsvProblemReport(new File(work.toFile(), "probleme.csv")));
+			worker.run();
+			worker.get();
+			long elapsed = System.nanoTime() - start;
+			long peakHeap = 0;
+			for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				if(pool.getType() == MemoryType.HEAP) peakHeap += pool.getPeakUsage().getUsed();
+			}
+
+			// Die Ergebnisse werden verzögert im Event-Dispatch-Thread in die Tabelle übernommen
+			for(int attempt = 0; attempt < 100 && table.getValueAt(samples.size() - 1, 0) == null; attempt++) {
+				Thread.sleep(50);
+				SwingUtilities.invokeAndWait(new Runnable() {
+					public void run() {
+					}
+				});
+			}
+			int wrong = 0;
+			for(int row = 0; row < samples.size(); row++) {
+				Object state = table.getValueAt(row, 0);
+				if(state != samples.get(row).expected) {
+					System.err.println(samples.get(row).file.getName() + ": Status " + state + ", erwartet " + samples.get(row).expected);
+					wrong++;
+				}
+			}
+			if(wrong > 0) return wrong + " Anträge haben nicht den erwarteten Status";
+
+			double filesPerSecond = samples.size() / (elapsed / 1e9);
+			double peakHeapMb = peakHeap / (1024.0 * 1024.0);
+			System.out.println(String.format("%d Anträge in %.1f s: %.1f Anträge/s, höchster Speicherverbrauch %.1f MB", samples.size(), elapsed / 1e9, filesPerSecond, peakHeapMb));
+
+			Properties measured = new Properties();
+			measured.setProperty("machine", machine());
+			measured.setProperty("count", Integer.toString(count));
+			measured.setProperty("files.per.second", String.format("%.1f", filesPerSecond).replace(',', '.'));
+			measured.setProperty("peak.heap.mb", String.format("%.1f", peakHeapMb).replace(',', '.'));
+			if(record) {
+				try(OutputStream out = new FileOutputStream(baselineFile)) {
+					measured.store(out, "Vergleichswerte für ThroughputBenchmark (" + count + " Anträge)");
+				}
+				System.out.println("Vergleichswerte in " + baselineFile + " gespeichert");
+				return null;
+			}
+			Properties baseline = new Properties();
+			try(InputStream in = new FileInputStream(baselineFile)) {
+				baseline.load(in);
+			}
+			if(!machine().equals(baseline.getProperty("machine"))) {
+				return "Die Vergleichswerte wurden auf einem anderen Rechner gemessen (" + baseline.getProperty("machine") + "), sie müssen mit " + RECORD_ARGUMENT + " (ant benchmark.record) neu gespeichert werden";
+			}
+			if(!Integer.toString(count).equals(baseline.getProperty("count"))) {
+				return "Die Vergleichswerte wurden mit " + baseline.getProperty("count") + " statt " + count + " Anträgen gemessen";
+			}
+			double baselineFilesPerSecond = Double.parseDouble(baseline.getProperty("files.per.second"));
+			double baselinePeakHeapMb = Double.parseDouble(baseline.getProperty("peak.heap.mb"));
+			System.out.println(String.format("Vergleichswerte: %.1f Anträge/s, %.1f MB", baselineFilesPerSecond, baselinePeakHeapMb));
+			if(filesPerSecond < baselineFilesPerSecond * (100 - TOLERANCE_PERCENT) / 100) return "Durchsatz ist gegenüber den Vergleichswerten gesunken";
+			if(peakHeapMb > baselinePeakHeapMb * (100 + TOLERANCE_PERCENT) / 100) return "Speicherverbrauch ist gegenüber den Vergleichswerten gestiegen";
+			return null;
+		} finally {
+			delete(work);
+		}
+	}
+
+	/** Beschreibt den Rechner und die Java-Version, von denen die Messwerte abhängen. */
+	private static String machine() {
+		String host;
+		try {
+			host = InetAddress.getLocalHost().getHostName();
+		} catch(UnknownHostException e) {
+			host = "unbekannt";
+		}
+		return host + ", " + System.getProperty("os.name") + " " + System.getProperty("os.arch") + ", "
+			+ Runtime.getRuntime().availableProcessors() + " Prozessoren, Java " + System.getProperty("java.version")
+			+ ", Heap " + (Runtime.getRuntime().maxMemory() >> 20) + " MB";
+	}
+
+	private static void delete(Path directory) throws IOException {
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
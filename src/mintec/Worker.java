@@ -0,0 +1,129 @@
+package mintec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.itextpdf.text.DocumentException;
+
+/**
+ * Ein eigenständiger Arbeitsprozess, der Anträge im Auftrag eines {@link WorkerPool} bearbeitet.
+ *
+ * Der Arbeitsprozess liest die Anträge von der Standardeingabe und schreibt die Ergebnisse auf die
+ * Standardausgabe. Für jeden Antrag wird genau ein Ergebnis geschrieben, in der Reihenfolge der Anträge.
+ * Das Format der Nachrichten ist in den Methoden {@link #writeRequest}, {@link #readRequest},
+ * {@link #writeResult} und {@link #readResult} festgelegt. Ist die Standardeingabe geschlossen, beendet
+ * sich der Arbeitsprozess.
+ */
+class Worker {
+	/** Kommandozeilenargument, mit dem die Druckversion der Zertifikate erzeugt wird. */
+	static final String PRINT_ARGUMENT = "--druck";
+
+	public static void main(String[] args) throws IOException, DocumentException {
+		// Die Standardausgabe wird ausschließlich für die Ergebnisse verwendet. Alle anderen Ausgaben
+		// (z.B. von Bibliotheken) werden auf die Fehlerausgabe umgeleitet.
+		PrintStream results = System.out;
+		System.setOut(System.err);
+
+		boolean print = args.length > 0 && PRINT_ARGUMENT.equals(args[0]);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(results));
+		try(EntryProcessor processor = new LocalProcessor(new TemplateCache(), EntryLimits.DEFAULT, print)) {
+			while(true) {
+				FileEntry entry;
+				try {
+					entry = readRequest(in);
+				} catch(EOFException e) {
+					break;
+				}
+				writeResult(out, processor.process(entry));
+				out.flush();
+			}
+		}
+	}
+
+	/**
+	 * Schreibt einen Antrag, der von einem Arbeitsprozess bearbeitet werden soll.
+	 *
+	 * @param out Der Stream zum Arbeitsprozess.
+	 * @param entry Der Antrag.
+	 * @param workbook Der Inhalt der Excel-Datei des Antrags.
+	 * @throws IOException Wenn das Schreiben fehlschlägt.
+	 */
+	static void writeRequest(DataOutputStream out, FileEntry entry, byte[] workbook) throws IOException {
+		out.writeUTF(entry.input.getName());
+		out.writeUTF(entry.school.key);
+		out.writeUTF(entry.school.name);
+		out.writeUTF(entry.school.designation);
+		out.writeUTF(entry.school.template.getAbsolutePath());
+		out.writeInt(workbook.length);
+		out.write(workbook);
+	}
+
+	static FileEntry readRequest(DataInputStream in) throws IOException {
+		String name = in.readUTF();
+		School school = new School(in.readUTF(), in.readUTF(), in.readUTF(), new File(in.readUTF()));
+		byte[] workbook = new byte[in.readInt()];
+		in.readFully(workbook);
+		return new FileEntry(new MemoryInput(name, workbook), name + ".pdf", school);
+	}
+
+	/**
+	 * Schreibt das Ergebnis der Bearbeitung eines Antrags.
+	 *
+	 * Fehler werden nur mit ihrer Meldung übertragen, da nur diese in der Tabelle angezeigt wird.
+	 *
+	 * @param out Der Stream zum koordinierenden Prozess.
+	 * @param result Das Ergebnis.
+	 * @throws IOException Wenn das Schreiben fehlschlägt.
+	 */
+	static void writeResult(DataOutputStream out, EntryProcessor.Result result) throws IOException {
+		out.writeInt(result.problems.size());
+		for(MintReader.Problem problem : result.problems) {
+			out.writeInt(problem.row);
+			out.writeUTF(problem.column);
+			out.writeUTF(problem.text);
+			out.writeBoolean(problem.fatal);
+		}
+
+		out.writeBoolean(result.exception != null);
+		if(result.exception != null) {
+			out.writeBoolean(result.exception instanceof LimitExceededException);
+			String message = String.valueOf(result.exception.getLocalizedMessage());
+			out.writeUTF(message.length() > 1000 ? message.substring(0, 1000) : message);
+		}
+
+		out.writeInt(result.certificate == null ? -1 : result.certificate.length);
+		if(result.certificate != null) out.write(result.certificate);
+	}
+
+	static EntryProcessor.Result readResult(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		List<MintReader.Problem> problems = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			problems.add(new MintReader.Problem(in.readInt(), in.readUTF(), in.readUTF(), in.readBoolean()));
+		}
+
+		Exception exception = null;
+		if(in.readBoolean()) {
+			boolean limitExceeded = in.readBoolean();
+			String message = in.readUTF();
+			exception = limitExceeded ? new LimitExceededException(message) : new IOException(message);
+		}
+
+		byte[] certificate = null;
+		int length = in.readInt();
+		if(length >= 0) {
+			certificate = new byte[length];
+			in.readFully(certificate);
+		}
+		return new EntryProcessor.Result(problems, exception, certificate);
+	}
+}
@@ -0,0 +1,227 @@
+package mintec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verteilt die Anträge auf mehrere eigenständige Java-Prozesse ({@link Worker}).
+ *
+ * Bei sehr großen Bearbeitungen ist ein einzelner Prozess durch den Speicherbedarf von POI und die dadurch
+ * verursachten Pausen der Speicherbereinigung begrenzt. Jeder Arbeitsprozess hat dagegen seinen eigenen
+ * Heap. Der Antrag wird dem Arbeitsprozess über eine Pipe übergeben und das fertige Zertifikat auf dem
+ * selben Weg zurückgeliefert; die Ausgabe der Zertifikate erfolgt weiterhin nur im koordinierenden Prozess.
+ *
+ * Stürzt ein Arbeitsprozess ab, wird er durch einen neuen ersetzt und der Antrag erneut bearbeitet.
+ *
+ * Überschreitet ein Antrag eine der {@link EntryLimits}, wird der Arbeitsprozess ebenfalls beendet, da er
+ * einen abgebrochenen Antrag eventuell noch weiter bearbeitet (siehe {@link LocalProcessor}). Antwortet ein
+ * Arbeitsprozess auch nach Ablauf des Zeitlimits nicht, wird er zwangsweise beendet.
+ *
+ * Die Größe des Heaps eines Arbeitsprozesses wird nicht der Standardeinstellung der JVM überlassen (ein Viertel
+ * des Arbeitsspeichers für jeden Prozess), sondern aus dem Arbeitsspeicher des Rechners und der Anzahl der
+ * Arbeitsprozesse berechnet (siehe {@link #heapMegabytes}). Mit den Systemeigenschaften {@value #HEAP_PROPERTY}
+ * und {@value #STACK_PROPERTY} können Heap (in MB) und Stack (in KB) eines Arbeitsprozesses vorgegeben werden.
+ */
+class WorkerPool implements EntryProcessor {
+	/** Wie oft ein Antrag höchstens bearbeitet wird, falls die Arbeitsprozesse dabei abstürzen. */
+	private static final int MAX_ATTEMPTS = 2;
+
+	/** Wie lange nach Ablauf des Zeitlimits höchstens noch auf die Antwort eines Arbeitsprozesses gewartet wird. */
+	private static final int GRACE_SECONDS = 10;
+
+	/** Systemeigenschaft für die Größe des Heaps eines Arbeitsprozesses in MB. */
+	static final String HEAP_PROPERTY = "mintec.worker.heap";
+
+	/** Systemeigenschaft für die Größe des Stacks eines Arbeitsprozesses in KB. */
+	static final String STACK_PROPERTY = "mintec.worker.stack";
+
+	/** Anteil des nicht vom koordinierenden Prozess belegten Arbeitsspeichers, der auf die Arbeitsprozesse verteilt wird. */
+	private static final double MEMORY_SHARE = 0.5;
+
+	/**
+	 * Kleinster Heap eines Arbeitsprozesses in MB. Ein Antrag darf bis zu {@link EntryLimits#maxUnpackedBytes}
+	 * entpackt belegen, dazu kommen die Objekte von POI und iText.
+	 */
+	private static final int MIN_HEAP_MB = 256;
+
+	/** Größter Heap eines Arbeitsprozesses in MB. Mehr Speicher verlängert nur die Pausen der Speicherbereinigung. */
+	private static final int MAX_HEAP_MB = 1024;
+
+	/** Standardgröße des Stacks eines Arbeitsprozesses in KB. */
+	private static final int DEFAULT_STACK_KB = 1024;
+
+	/** Ein Platz für einen Arbeitsprozess. Der Prozess wird erst bei Bedarf gestartet. */
+	private static class Slot {
+		Process process;
+		DataOutputStream requests;
+		DataInputStream results;
+		volatile boolean killed;
+	}
+
+	private final BlockingQueue<Slot> idle;
+	private final List<Slot> slots = new ArrayList<>();
+	private final EntryLimits limits;
+	private final boolean print;
+	private final int heapMegabytes;
+	private final int stackKilobytes;
+	private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, "mintec-watchdog");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * @param size Anzahl der Arbeitsprozesse.
+	 * @param limits Die Grenzen für die Bearbeitung eines einzelnen Antrags.
+	 * @param print Legt fest, ob die Druckversion der Zertifikate erzeugt wird, siehe {@link MintWriter}.
+	 */
+	WorkerPool(int size, EntryLimits limits, boolean print) {
+		this.idle = new ArrayBlockingQueue<>(size);
+		this.limits = limits;
+		this.print = print;
+		this.heapMegabytes = Integer.getInteger(HEAP_PROPERTY, heapMegabytes(size));
+		this.stackKilobytes = Integer.getInteger(STACK_PROPERTY, DEFAULT_STACK_KB);
+		for(int i = 0; i < size; i++) {
+			Slot slot = new Slot();
+			slots.add(slot);
+			idle.add(slot);
+		}
+	}
+
+	@Override
+	public Result process(FileEntry entry) {
+		byte[] workbook;
+		try(InputStream in = entry.input.open()) {
+			workbook = LocalProcessor.readLimited(in, limits, System.nanoTime() + TimeUnit.SECONDS.toNanos(limits.timeoutSeconds));
+		} catch(IOException e) {
+			return new Result(new ArrayList<MintReader.Problem>(), e, null);
+		}
+
+		Slot slot;
+		try {
+			slot = idle.take();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new Result(new ArrayList<MintReader.Problem>(), e, null);
+		}
+		try {
+			IOException failure = null;
+			for(int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+				try {
+					if(slot.process == null) start(slot);
+					Result result;
+					ScheduledFuture<?> kill = watchdog.schedule(killer(slot), limits.timeoutSeconds + GRACE_SECONDS, TimeUnit.SECONDS);
+					try {
+						Worker.writeRequest(slot.requests, entry, workbook);
+						slot.requests.flush();
+						result = Worker.readResult(slot.results);
+					} finally {
+						kill.cancel(false);
+					}
+					if(slot.killed || result.exception instanceof LimitExceededException) stop(slot);
+					return result;
+				} catch(IOException e) {
+					if(slot.killed) {
+						stop(slot);
+						return new Result(new ArrayList<MintReader.Problem>(), new LimitExceededException("Zeitlimit von " + limits.timeoutSeconds + " Sekunden überschritten"), null);
+					}
+					// Der Arbeitsprozess ist abgestürzt (oder antwortet nicht mehr wie erwartet). Er wird beim
+					// nächsten Versuch durch einen neuen Prozess ersetzt.
+					failure = e;
+					stop(slot);
+				}
+			}
+			return new Result(new ArrayList<MintReader.Problem>(), new IOException("Arbeitsprozess ist bei der Bearbeitung abgestürzt", failure), null);
+		} finally {
+			idle.add(slot);
+		}
+	}
+
+	/** Beendet den Arbeitsprozess eines Platzes zwangsweise, wenn er nicht rechtzeitig antwortet. */
+	private static Runnable killer(final Slot slot) {
+		final Process process = slot.process;
+		return new Runnable() {
+			@Override
+			public void run() {
+				slot.killed = true;
+				process.destroy();
+			}
+		};
+	}
+
+	/**
+	 * Berechnet die Größe des Heaps eines Arbeitsprozesses: Vom Arbeitsspeicher des Rechners wird der Heap des
+	 * koordinierenden Prozesses abgezogen und die Hälfte des Rests auf die Arbeitsprozesse verteilt. Das Ergebnis
+	 * wird auf {@value #MIN_HEAP_MB} bis {@value #MAX_HEAP_MB} MB begrenzt. Ist der Arbeitsspeicher des Rechners
+	 * nicht bekannt, erhält jeder Arbeitsprozess den kleinsten Heap.
+	 *
+	 * @param size Anzahl der Arbeitsprozesse.
+	 */
+	static int heapMegabytes(int size) {
+		OperatingSystemMXBean system = ManagementFactory.getOperatingSystemMXBean();
+		if(!(system instanceof com.sun.management.OperatingSystemMXBean)) return MIN_HEAP_MB;
+		long physical = ((com.sun.management.OperatingSystemMXBean)system).getTotalPhysicalMemorySize();
+		long available = Math.max(0, physical - Runtime.getRuntime().maxMemory());
+		long share = (long)(available * MEMORY_SHARE) / size >> 20;
+		return (int)Math.max(MIN_HEAP_MB, Math.min(MAX_HEAP_MB, share));
+	}
+
+	private void start(Slot slot) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.add("-Xmx" + heapMegabytes + "m");
+		command.add("-Xss" + stackKilobytes + "k");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Worker.class.getName());
+		if(print) command.add(Worker.PRINT_ARGUMENT);
+
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		slot.process = builder.start();
+		slot.killed = false;
+		slot.requests = new DataOutputStream(new BufferedOutputStream(slot.process.getOutputStream()));
+		slot.results = new DataInputStream(new BufferedInputStream(slot.process.getInputStream()));
+	}
+
+	private void stop(Slot slot) {
+		if(slot.process == null) return;
+		slot.process.destroy();
+		slot.process = null;
+		slot.requests = null;
+		slot.results = null;
+	}
+
+	@Override
+	public void close() {
+		watchdog.shutdownNow();
+		for(Slot slot : slots) {
+			if(slot.process == null) continue;
+			try {
+				// Schließen der Standardeingabe beendet den Arbeitsprozess regulär.
+				slot.requests.close();
+			} catch(IOException ignored) {
+			}
+			stop(slot);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package mintec;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Führt das Schreiben der Ergebnisse in einem eigenen Thread aus.
+ *
+ * Das Schreiben der Zertifikate in das Ausgabeziel (oft ein Netzlaufwerk) und in das Gesamtdokument soll
+ * die Bearbeitung der nächsten Anträge nicht aufhalten. Die Aufgaben werden in der Reihenfolge ausgeführt,
+ * in der sie übergeben werden. Damit nicht beliebig viele Zertifikate auf das Schreiben warten, blockiert
+ * {@link #submit}, solange bereits {@code capacity} Aufgaben warten.
+ *
+ * Schlägt eine Aufgabe fehl, werden alle weiteren Aufgaben übersprungen und der Fehler von {@link #finish}
+ * geworfen.
+ */
+class WriterStage implements AutoCloseable {
+	private final Semaphore capacity;
+	private volatile Exception failure = null;
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, "mintec-writer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * @param capacity Anzahl der Aufgaben, die höchstens auf ihre Ausführung warten.
+	 */
+	WriterStage(int capacity) {
+		this.capacity = new Semaphore(capacity);
+	}
+
+	/**
+	 * Übergibt eine Aufgabe an den Schreib-Thread. Wartet, falls bereits zu viele Aufgaben warten.
+	 *
+	 * @param task Die auszuführende Aufgabe.
+	 * @throws InterruptedException Wenn der Thread beim Warten unterbrochen wird.
+	 */
+	void submit(final Callable<Void> task) throws InterruptedException {
+		capacity.acquire();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if(failure == null) task.call();
+				} catch(Exception e) {
+					failure = e;
+				} finally {
+					capacity.release();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Wartet, bis alle übergebenen Aufgaben ausgeführt sind. Danach können keine Aufgaben mehr übergeben werden.
+	 *
+	 * @throws InterruptedException Wenn der Thread beim Warten unterbrochen wird.
+	 * @throws ExecutionException Wenn eine Aufgabe fehlgeschlagen ist, mit dem Fehler dieser Aufgabe.
+	 */
+	void finish() throws InterruptedException, ExecutionException {
+		executor.shutdown();
+		while(!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+			// Weiter warten, bis auch große Zertifikate auf einem langsamen Laufwerk geschrieben sind
+		}
+		if(failure != null) throw new ExecutionException(failure);
+	}
+
+	/**
+	 * Bricht alle wartenden Aufgaben ab und wartet, bis die laufende Aufgabe beendet ist. Der Schreib-Thread greift danach nicht mehr auf Ausgabeziel und Gesamtdokument zu.
+	 */
+	@Override
+	public void close() {
+		executor.shutdownNow();
+		boolean interrupted = false;
+		while(true) {
+			try {
+				if(executor.awaitTermination(1, TimeUnit.MINUTES)) break;
+			} catch(InterruptedException e) {
+				// Auch ein abgebrochener Thread muss warten, die Unterbrechung wird danach wiederhergestellt
+				interrupted = true;
+			}
+		}
+		if(interrupted) Thread.currentThread().interrupt();
+	}
+}
@@ -0,0 +1,123 @@
+package mintec;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Ein Antrag, der als Eintrag in einem ZIP-Archiv vorliegt.
+ *
+ * Die Anträge werden direkt aus dem Archiv gestreamt. Das Archiv wird erst beim Lesen des ersten Antrags
+ * geöffnet und von {@link #close} wieder geschlossen, sobald eine Bearbeitung beendet ist. So bleibt das
+ * Archiv zwischen den Bearbeitungen nicht gesperrt und kann trotzdem erneut bearbeitet werden.
+ */
+class ZipInput implements InputSource {
+	/** Das gemeinsame Archiv aller Anträge aus derselben ZIP-Datei. */
+	private static class Archive implements Closeable {
+		private final File file;
+		private ZipFile zip = null;
+
+		Archive(File file) {
+			this.file = file;
+		}
+
+		synchronized ZipFile open() throws IOException {
+			if(zip == null) zip = new ZipFile(file);
+			return zip;
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			if(zip != null) zip.close();
+			zip = null;
+		}
+	}
+
+	private final Archive archive;
+	private final String entryName;
+	private final String path;
+	private final long size;
+
+	private ZipInput(Archive archive, ZipEntry entry, String path) {
+		this.archive = archive;
+		this.entryName = entry.getName();
+		this.path = path;
+		this.size = entry.getSize();
+	}
+
+	/**
+	 * Liest das Inhaltsverzeichnis eines ZIP-Archivs und liefert alle darin enthaltenen Anträge (Excel-Dateien).
+	 *
+	 * Verzeichnisse und versteckte Dateien (z.B. die von macOS angelegten "__MACOSX"-Einträge)
+	 * werden übersprungen.
+	 *
+	 * @param file Das ZIP-Archiv.
+	 * @return Die Anträge im Archiv, in der Reihenfolge des Archivs.
+	 * @throws IOException Wenn das Archiv nicht gelesen werden kann.
+	 */
+	static List<InputSource> entries(File file) throws IOException {
+		Archive archive = new Archive(file);
+		List<InputSource> result = new ArrayList<>();
+		try(ZipFile zip = new ZipFile(file)) {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while(entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				String path = relativePath(entry.getName());
+				String name = path.substring(path.lastIndexOf('/') + 1);
+				if(entry.isDirectory() || path.startsWith("__MACOSX/") || name.startsWith(".")) continue;
+				if(!ExcelFilter.isExcelFile(name)) continue;
+				result.add(new ZipInput(archive, entry, path));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Der Pfad eines Eintrags ohne leere, "." und ".." Bestandteile, damit die daraus abgeleiteten
+	 * Ausgabedateien nicht außerhalb des Ausgabeverzeichnisses angelegt werden.
+	 */
+	private static String relativePath(String entryName) {
+		StringBuilder path = new StringBuilder();
+		for(String part : entryName.replace('\\', '/').split("/")) {
+			if(part.isEmpty() || part.equals(".") || part.equals("..")) continue;
+			if(path.length() > 0) path.append('/');
+			path.append(part);
+		}
+		return path.toString();
+	}
+
+	/**
+	 * @return Der Pfad des Antrags innerhalb des Archivs, damit gleichnamige Anträge aus verschiedenen
+	 *         Verzeichnissen des Archivs unterschieden werden können.
+	 */
+	@Override
+	public String getName() {
+		return path;
+	}
+
+	@Override
+	public InputStream open() throws IOException {
+		ZipFile zip = archive.open();
+		ZipEntry entry = zip.getEntry(entryName);
+		if(entry == null) throw new FileNotFoundException(entryName + " ist nicht mehr im Archiv enthalten");
+		return zip.getInputStream(entry);
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	/** Schließt das Archiv, und damit auch die Streams aller anderen Anträge aus demselben Archiv. */
+	@Override
+	public void close() throws IOException {
+		archive.close();
+	}
+}
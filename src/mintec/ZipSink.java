@@ -0,0 +1,56 @@
+package mintec;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Schreibt alle Ausgabedateien nacheinander in ein einziges ZIP-Archiv.
+ *
+ * Statt vieler kleiner Dateien entsteht so nur ein einziger sequentieller Schreibvorgang, was
+ * besonders auf langsamen Netzlaufwerken deutlich schneller ist. Das Archiv erscheint erst nach dem
+ * Schließen unter seinem Namen, siehe {@link AtomicFileOutputStream}.
+ */
+class ZipSink implements OutputSink {
+	private final AtomicFileOutputStream file;
+	private final ZipOutputStream zip;
+
+	ZipSink(File file) throws IOException {
+		this.file = new AtomicFileOutputStream(file);
+		this.zip = new ZipOutputStream(this.file);
+	}
+
+	@Override
+	public OutputStream create(String name) throws IOException {
+		zip.putNextEntry(new ZipEntry(name));
+		return new FilterOutputStream(zip) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				zip.closeEntry();
+			}
+		};
+	}
+
+	@Override
+	public void delete(String name) {
+		// Das Archiv wird bei jeder Bearbeitung neu angelegt und enthält keine früheren Dateien
+	}
+
+	@Override
+	public void abort() {
+		file.abort();
+	}
+
+	@Override
+	public void close() throws IOException {
+		zip.close();
+	}
+}